@@ -0,0 +1,181 @@
+/*****************************************************************************\
+ * AlmanacBuilder
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes the almanac files read by <TT>AlmanacStore</TT>, and a
+ * command-line program to rebuild one when its sites change.
+ * <P>
+ * Each site is run through a <TT>RiseSetSeries</TT> for the Sun and
+ * one for the Moon, so consecutive days share their positions. Times
+ * are rounded to the nearest minute, and are local: each day starts at
+ * the site's local midnight, with its zone's offset for that day
+ * (<TT>SiteCatalog.getZoneOffsets()</TT>).
+ */
+public class AlmanacBuilder {
+  private AlmanacBuilder() {}
+
+ /**
+  * Build an almanac file.
+  * <P>
+  * The file is written under a temporary name and then renamed, so
+  * readers never see a partial file.
+  *
+  * @param sites The sites
+  * @param firstDay The first day (a Julian day number, see
+  *     <TT>DateOps.dmyToDay()</TT>)
+  * @param days Number of days
+  * @param file The almanac file
+  *
+  * @throws IOException if the file can't be written
+  */
+  public static void build( SiteCatalog sites, long firstDay, int days, File file )
+         throws IOException
+  {
+    File tmp = new File( file.getPath() + ".tmp" );
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+    try {
+      out.writeInt( AlmanacStore.MAGIC );
+      out.writeShort( AlmanacStore.VERSION );
+      out.writeShort( AlmanacStore.EVENTS );
+      out.writeLong( firstDay );
+      out.writeInt( days );
+      out.writeInt( sites.size() );
+      for ( int s = 0; s < sites.size(); s++ ) {
+        byte name[] = sites.getName( s ).getBytes( AlmanacStore.UTF8 );
+        out.writeShort( name.length );
+        out.write( name );
+        out.writeDouble( sites.getLatitude( s ) );
+        out.writeDouble( sites.getLongitude( s ) );
+        out.writeInt( sites.getTimeZone( s ) );
+        String zone = sites.getZone( s );
+        byte zoneName[] = ( null == zone ) ? new byte[0] : zone.getBytes( AlmanacStore.UTF8 );
+        out.writeShort( zoneName.length );
+        out.write( zoneName );
+      }
+
+      SolarEvents se = new SolarEvents();
+      for ( int s = 0; s < sites.size(); s++ ) {
+        ObsInfo oi = sites.getObsInfo( s );
+        ZoneOffsets zone = sites.getZoneOffsets( s );
+        PlanetData pd = new PlanetData();
+        RiseSetSeries sun = new RiseSetSeries( RiseSet.SUN, oi, pd );
+        RiseSetSeries moon = new RiseSetSeries( RiseSet.MOON, oi, pd );
+
+        for ( int d = 0; d < days; d++ ) {
+          // local midnight (consecutive days share positions, except
+          // across a Daylight time change)
+          long day = firstDay + d;
+          double jd = day - .5 - zone.offset( day ) / Astro.HOURS_PER_DAY;
+          sun.getSolarEvents( jd, se );
+          for ( int i = 0; i < SolarEvents.THRESHOLDS; i++ ) {
+            out.writeShort( toMinutes( se.rise[i] ) );
+            out.writeShort( toMinutes( se.set[i] ) );
+          }
+          TimePair tp = moon.getTimes( RiseSet.MOON, jd );
+          out.writeShort( toMinutes( tp.a ) );
+          out.writeShort( toMinutes( tp.b ) );
+        }
+      }
+    }
+    finally {
+      out.close();
+    }
+
+    Files.move( tmp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+  }
+
+ /**
+  * Check whether an almanac file covers the given sites and dates.
+  *
+  * @return <TT>true</TT> if the file exists and has exactly these
+  *     sites and days
+  */
+  public static boolean isCurrent( SiteCatalog sites, long firstDay, int days, File file ) {
+    if ( !file.canRead() )
+      return false;
+    try {
+      AlmanacStore as = new AlmanacStore( file );
+      return as.getFirstDay() == firstDay && as.getDays() == days &&
+             as.getSites().equals( sites );
+    }
+    catch ( IOException ioe ) {
+      return false;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // day fraction to minutes (0 to 1439), or NONE
+  //
+  private static short toMinutes( double fraction ) {
+    if ( fraction < 0D )
+      return AlmanacStore.NONE;
+    long m = Math.round( fraction * Astro.HOURS_PER_DAY * Astro.MINUTES_PER_HOUR );
+    return (short)Math.min( m, Astro.IHOURS_PER_DAY * Astro.IMINUTES_PER_HOUR - 1 );
+  }
+
+  //-------------------------------------------------------------------------
+  private static void usage( String pn ) {
+    System.err.println(
+        "usage: " + pn + " <sites file> <first year> <years> <almanac file> [-f]\n" +
+        "       -f = rebuild even if the almanac file is current" );
+    System.exit(1);
+  }
+
+ /**
+  * The rebuild program entry point.
+  * <P><TT>
+  * usage: AlmanacBuilder &lt;sites file&gt; &lt;first year&gt; &lt;years&gt; &lt;almanac file&gt; [-f] <BR>
+  *        -f = rebuild even if the almanac file is current
+  * </TT><P>
+  * The almanac file is only rebuilt if its sites or dates differ from
+  * the ones requested. See <TT>SiteCatalog</TT> for the sites file
+  * format.
+  */
+  public static void main( String args[] ) {
+    final String PROCNAME = "AlmanacBuilder";
+
+    if ( args.length < 4 || args.length > 5 )
+      usage( PROCNAME );
+    boolean force = ( 5 == args.length );
+    if ( force && !"-f".equals( args[4] ) )
+      usage( PROCNAME );
+
+    int year = 0, years = 0;
+    try {
+      year = Integer.parseInt( args[1] );
+      years = Integer.parseInt( args[2] );
+    }
+    catch ( NumberFormatException nfe ) {
+      usage( PROCNAME );
+    }
+    if ( years <= 0 )
+      usage( PROCNAME );
+
+    long firstDay = DateOps.dmyToDay( 1, 1, year );
+    int days = (int)( DateOps.dmyToDay( 1, 1, year + years ) - firstDay );
+    File file = new File( args[3] );
+
+    try {
+      SiteCatalog sites = SiteCatalog.read( new File( args[0] ) );
+      if ( !force && isCurrent( sites, firstDay, days, file ) ) {
+        System.err.println( file + " is up to date." );
+        return;
+      }
+      build( sites, firstDay, days, file );
+      System.err.println( "Wrote " + sites.size() + " sites, " + days + " days to " + file );
+    }
+    catch ( IOException ioe ) {
+      System.err.println( "Error: " + ioe.getMessage() );
+      System.exit(1);
+    }
+  }
+}
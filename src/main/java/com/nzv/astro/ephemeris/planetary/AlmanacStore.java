@@ -0,0 +1,180 @@
+/*****************************************************************************\
+ * AlmanacStore
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.time.DateTimeException;
+
+/**
+ * Read access to an almanac file written by <TT>AlmanacBuilder</TT>:
+ * the Sun's and Moon's rise/set and twilight times for a list of
+ * sites, for every day of a date range.
+ * <P>
+ * The file is memory-mapped, and each time is a 16-bit count of
+ * minutes past local midnight (in the site's zone, Daylight time
+ * included; a time zone given in whole hours is standard time all
+ * year, see <TT>SiteCatalog</TT>), so a lookup is a single read at a computed
+ * offset, with no allocation and no ephemeris work. Lookups are safe
+ * from any number of threads.
+ * <P>
+ * File layout (big-endian):
+ * <PRE>
+ *   int    magic ("ALM1")
+ *   short  version
+ *   short  events per day (EVENTS)
+ *   long   first day (Julian day number)
+ *   int    number of days
+ *   int    number of sites
+ *   per site: short name length, UTF-8 name, double lat, double lon, int tz,
+ *             short zone length, UTF-8 zone id (empty for whole hours)
+ *   short  minutes[site][day][event] (NONE if the event doesn't occur)
+ * </PRE>
+ */
+public class AlmanacStore {
+ /**
+  * Event index (pseudo-enum)
+  */
+  public static final int SUNRISE = 0, SUNSET = 1,
+      CIVIL_START = 2, CIVIL_END = 3,
+      NAUTICAL_START = 4, NAUTICAL_END = 5,
+      ASTRONOMICAL_START = 6, ASTRONOMICAL_END = 7,
+      MOONRISE = 8, MOONSET = 9;
+
+ /**
+  * Number of events per day
+  */
+  public static final int EVENTS = 10;
+
+  static final int MAGIC = 0x414C4D31;      // "ALM1"
+  static final short VERSION = 2;
+  static final short NONE = -1;          // no event that day
+  static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+ /**
+  * Open (map) an almanac file.
+  *
+  * @param file The almanac file
+  *
+  * @throws IOException if the file can't be read, or is not an
+  *     almanac file
+  */
+  public AlmanacStore( File file ) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile( file, "r" );
+    try {
+      m_buf = raf.getChannel().map( FileChannel.MapMode.READ_ONLY, 0, raf.length() );
+    }
+    finally {
+      raf.close();    // the mapping stays valid
+    }
+
+    if ( m_buf.remaining() < 24 || MAGIC != m_buf.getInt() ||
+         VERSION != m_buf.getShort() || EVENTS != m_buf.getShort() )
+      throw new IOException( file + ": not an almanac file (or wrong version)" );
+    try {
+      m_firstDay = m_buf.getLong();
+      m_days = m_buf.getInt();
+      m_sites = readSites( m_buf );
+    }
+    catch ( BufferUnderflowException bue ) {
+      throw new IOException( file + ": truncated almanac file" );
+    }
+    catch ( DateTimeException dte ) {
+      throw new IOException( file + ": " + dte.getMessage() );
+    }
+    m_dataOffset = m_buf.position();
+
+    long expected = m_dataOffset + 2L * EVENTS * m_days * m_sites.size();
+    if ( m_buf.limit() != expected )
+      throw new IOException( file + ": truncated almanac file" );
+  }
+
+ /**
+  * Get the sites.
+  */
+  public SiteCatalog getSites() { return m_sites; }
+
+ /**
+  * Get the first day covered (a Julian day number, as
+  * <TT>DateOps.dmyToDay()</TT> returns).
+  */
+  public long getFirstDay() { return m_firstDay; }
+
+ /**
+  * Get the number of days covered.
+  */
+  public int getDays() { return m_days; }
+
+ /**
+  * Get the index of a day in the store.
+  *
+  * @param day A Julian day number (see <TT>DateOps.dmyToDay()</TT>)
+  *
+  * @return The index, or -1 if the day is not covered
+  */
+  public int dayIndex( long day ) {
+    long i = day - m_firstDay;
+    return ( i >= 0 && i < m_days ) ? (int)i : -1;
+  }
+
+ /**
+  * Get an event time, in minutes past local midnight.
+  *
+  * @param site The site's index
+  * @param day The day's index (see <TT>dayIndex()</TT>)
+  * @param event The event (SUNRISE ... MOONSET)
+  *
+  * @return The minutes, or -1 if the event doesn't occur that day
+  */
+  public int getMinutes( int site, int day, int event ) {
+    return m_buf.getShort( m_dataOffset +
+                           2 * ( ( site * m_days + day ) * EVENTS + event ) );
+  }
+
+ /**
+  * Get an event time, as a fraction of the day (as
+  * <TT>RiseSet</TT> returns them).
+  *
+  * @param site The site's index
+  * @param day The day's index (see <TT>dayIndex()</TT>)
+  * @param event The event (SUNRISE ... MOONSET)
+  *
+  * @return The time, or Astro.INVALID if the event doesn't occur
+  *     that day
+  */
+  public double getTime( int site, int day, int event ) {
+    int m = getMinutes( site, day, event );
+    return ( m < 0 ) ? Astro.INVALID
+                     : m / ( Astro.HOURS_PER_DAY * Astro.MINUTES_PER_HOUR );
+  }
+
+  //-------------------------------------------------------------------------
+  private static SiteCatalog readSites( ByteBuffer buf ) {
+    SiteCatalog sc = new SiteCatalog();
+    for ( int n = buf.getInt(); n > 0; n-- ) {
+      byte name[] = new byte[buf.getShort()];
+      buf.get( name );
+      double lat = buf.getDouble(), lon = buf.getDouble();
+      int tz = buf.getInt();
+      byte zone[] = new byte[buf.getShort()];
+      buf.get( zone );
+      if ( 0 == zone.length )
+        sc.add( new String( name, UTF8 ), lat, lon, tz );
+      else
+        sc.add( new String( name, UTF8 ), lat, lon, new String( zone, UTF8 ) );
+    }
+    return sc;
+  }
+
+  private final MappedByteBuffer m_buf;
+  private final long m_firstDay;
+  private final int m_days;
+  private final SiteCatalog m_sites;
+  private final int m_dataOffset;
+}
@@ -106,6 +106,12 @@ public final class Astro {
    */
   public static final double J2000 = 2451545.0;
 
+ /**
+  * Rate of the Earth's rotation relative to the equinox (sidereal
+  * time), in radians per day.
+  */
+  public static final double SIDEREAL_RATE = Math.toRadians( 360.98564736629 );
+
  /**
   * Our generic "invalid" double value.
   */
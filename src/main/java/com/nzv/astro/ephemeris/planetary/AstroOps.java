@@ -95,6 +95,23 @@ public class AstroOps
     return (double)hours / Astro.HOURS_PER_DAY;
   }
 
+  /**
+   * Calculates local mean noon at a longitude, as days after 0h UT of
+   * the same (local) date: 0 at 180 degrees east, .5 at Greenwich, and
+   * 1 (0h UT of the next date) at 180 degrees west. Longitudes outside
+   * -180..180 are wrapped into 0 (inclusive) to 1 (exclusive).
+   *
+   * @param lon Longitude in degrees (east positive)
+   *
+   * @return Local mean noon, in days after 0h UT (0..1)
+   */
+  public static double localMeanNoon( double lon ) {
+    double noon = .5 - lon / Astro.DEG_PER_CIRCLE;
+    if ( noon < 0D || noon > 1D )
+      noon -= Math.floor( noon );
+    return noon;
+  }
+
   /**
    * Convert a Julian day value to Julian millenia referenced to
    * epoch J2000. <BR>
@@ -26,7 +26,6 @@ import java.text.DecimalFormat;
 //import com.mhuss.AstroLib.*;
 
 
-import com.nzv.astro.ephemeris.planetary.util.Str;
 
 /**
  * A command-line program to determine the darkest hours for a
@@ -41,14 +40,16 @@ public class DarkCal {
 
   static final String CFG_EXT = ".cfg";
 
-  static final int DST_NONE = 0, DST_START=1, DST_END=2;
-
   boolean g_tabDelimited = false; // true means produce tab-delimited output
   boolean g_ignoreDst = false;    // true means ignore DST
   boolean g_html = false;         // true means produce HTML output
   boolean g_printable = false;    // true means produce printer-friendly HTML output
+  boolean g_csv = false;          // true means produce CSV output
+  boolean g_json = false;         // true means produce JSON output
+  boolean g_eventTimes = false;   // true means print phase/season times
   PrintWriter g_pw;               // file to use for tab-d or HTML
   String g_optLink = "&nbsp;";    // optional return link
+  DarkCalCache g_cache;           // calculated months, or null
 
   //----------------------------------------------------------------------------
   DarkCal() {}
@@ -105,17 +106,27 @@ public class DarkCal {
     g_optLink = s;
   }
 
+  //----------------------------------------------------------------------------
+ /**
+  * Set a cache of calculated months. Months found in the cache are
+  * printed without being recalculated.
+  *
+  * @param cache The cache, or <TT>null</TT> to always calculate
+  */
+  public void setCache( DarkCalCache cache ) {
+    g_cache = cache;
+  }
+
   //----------------------------------------------------------------------------
   // print heading
   //
   private void printHeading(DarkCalInput cd) {
     DecimalFormat llfmt = new DecimalFormat("##0.00");
-    String pUtc = ( cd.tz < 0 ) ? "UTC" : "UTC+";
     String date = monthNames[ cd.month-1 ] + " " + cd.year;
     String location =  "latitude " +
         llfmt.format(cd.lat)  + ", longitude " +
         llfmt.format(cd.lon)  + ", timezone " +
-        pUtc + cd.tz;
+        ZoneOffsets.of(cd).getName();
 
     if ( g_tabDelimited ) {
       g_pw.println( "\n" + date + " " + location + "\n\n" +
@@ -171,231 +182,95 @@ public class DarkCal {
     }
     else {
       g_pw.println( "\n" + date + " " + location + "\n\n" +
-              "Day Darkest                  Moon   Moon   Sunset AstTwi Next AstTwi Sunrise\n" +
-              "    Hours          Events    Rises  Sets          Ends   Day  Starts\n" +
-              "--  -------------  --------  -----  -----  -----  -----  --   -----  -----\n" );
+              widen( "Day Darkest                  Moon   Moon   Sunset AstTwi Next AstTwi Sunrise\n" ) +
+              widen( "    Hours          Events    Rises  Sets          Ends   Day  Starts\n" ) +
+              widen( "--  -------------  --------  -----  -----  -----  -----  --   -----  -----\n" ) );
     }
   }
 
   //----------------------------------------------------------------------------
-  private StringBuffer nextColumn( StringBuffer p, int sp, boolean empty )
-  {
-    if (g_tabDelimited)
-      p.append('\t');
-    else if (g_html) {
-      if (empty)
-        p.append("&nbsp;</TD>\n  <TD>");
-      else
-        p.append("</TD>\n  <TD>");
-    }
-    else {
-      while (sp-- > 0)
-        p.append(' ');
-    }
-    return p;
-  }
-
-  StringBuffer nextColumn( StringBuffer p, int sp ) {
-    return nextColumn( p, sp, false );
-  }
-
-  //----------------------------------------------------------------------------
-  // print a (double) time as hh:mm
-  //
-  // a time < 0 is printed as '--:--'
-  //
-  private StringBuffer printTime( StringBuffer p, double t, boolean ws )
-  {
-     p.append( TimeOps.formatTime(t) );
-     return ws ? nextColumn( p, 2) : p;
-  }
-
-  StringBuffer printTime( StringBuffer p, double t ) {
-    return printTime(p,t,true);
-  }
-
-  //----------------------------------------------------------------------------
-  // print a pair of (double) times as hh:mm
+  // widen the events column of a text heading line for event times
   //
-  private StringBuffer printTimes( StringBuffer p, TimePair tp ) {
-    p = printTime( p, tp.a, false );
-    p.append( " - " );
-    return printTime( p, tp.b );
+  private String widen( String line ) {
+    if ( !g_eventTimes )
+      return line;
+    final int moonColumn = 29;
+    StringBuffer sb = new StringBuffer( line );
+    for ( int i = 0; i < DarkCalWriter.EXTRA_EVENT_WIDTH; i++ )
+      sb.insert( moonColumn, ' ' );
+    return sb.toString();
   }
 
   //----------------------------------------------------------------------------
-  // print the day, substituting 'Su' on Sundays
+  // output format for DarkCalWriter
   //
-  // d = 1..31
-  //
-  private StringBuffer printDay( StringBuffer p, long jd, int d, boolean eom ) {
-    if( (jd+d) % 7 == 6)        /* Sunday */
-      p.append( "Su" );
-    else {
-      int nextDay = eom ? 1 : d+1;
-      p.append( Str.fmt(nextDay, 2) );
-    }
-    return nextColumn(p,2);
-  }
-
-  StringBuffer printDay( StringBuffer p, long jd, int d) {
-    return printDay( p, jd, d, false );
-  }
-
-  //----------------------------------------------------------------------------
-  // figure out darkest hours & print to buffer
-  //
-  private StringBuffer printDarkness( StringBuffer p, int i, DarkCalData dcd )
-  {
-    // print out darkness range or 'none'
-    if ( dcd.noDarkness[i] ) {
-      p.append( " -- none -- " );
-      p = nextColumn(p, 3);
-    }
-    else
-      p = printTimes( p, dcd.dark[i] );
-
-    return p;
+  private int format() {
+    if (g_html)
+      return DarkCalWriter.HTML;
+    if (g_tabDelimited)
+      return DarkCalWriter.TAB_DELIMITED;
+    if (g_csv)
+      return DarkCalWriter.CSV;
+    if (g_json)
+      return DarkCalWriter.JSON;
+    return DarkCalWriter.TEXT;
   }
 
-  /*----------------------------------------------------------------------------
-  check for lunar and solar quarters & print if found
-
-  The 'AstroOps.quadrant' function helps in figuring out dates of lunar phases
-  and solstices/equinoxes.  If the solar longitude is in one quadrant at
-  the start of a day,  but in a different quadrant at the end of a day,
-  then we know that there must have been a solstice or equinox during that
-  day.  Also,  if (lunar longitude - solar longitude) changes quadrants
-  between the start of a day and the end of a day,  we know there must have
-  been a lunar phase change during that day.
-  */
-  //
-
-  private StringBuffer printEvents( StringBuffer p, int i, DarkCalData dcd, int dstDay )
-  {
-    int lenLeft = 10;
-
-    PlanetData pd = new PlanetData();
-    double lunarLon[] = new double[2], solarLon[] = new double[2];
-
-    ObsInfo loc = new ObsInfo( new Latitude(dcd.dci.lat), new Longitude(dcd.dci.lon), dcd.dci.tz );
-    // get ecliptic longitude for earth & moon
-    //
-    for( int j=0; j<2; j++ ) {
-      double jd = dcd.jd[i] + (double)j;
-      solarLon[j] = pd.calcLon( Planets.EARTH, jd, loc );
-      lunarLon[j] = pd.calcLon( Planets.LUNA, jd, loc );
-    }
+  /**
+   * Print out the data
+   *
+   * @param dcd The DarkCalData instance to use
+   */
+  public void printData(DarkCalData dcd) {
+    int format = format();
+    DarkCalWriter dcw = new DarkCalWriter(g_pw, format);
+    dcw.setEventTimes(g_eventTimes);
 
-    // We don't bother finding the exact instant of the following events.
-    // The code just checks for a quadrant change and reports the  event.
+    // CSV and JSON have no headings
+    if (DarkCalWriter.CSV != format && DarkCalWriter.JSON != format)
+      printHeading(dcd.dci);
 
-    // check for lunar quarters
-    //
-    int quad1 = AstroOps.quadrant( lunarLon[1] - solarLon[1] );
-    int quad0 = AstroOps.quadrant( lunarLon[0] - solarLon[0] );
-    if( quad1 != quad0 ) {
-      final String strings[] = { "1Q ", "FM ", "3Q ", "NM " };
-      p.append(strings[quad0]);
-      lenLeft -= 3;
+    try {
+      dcw.write(dcd);
+      dcw.flush();
     }
-
-    // check for solar quarters
-    //
-    quad1 = AstroOps.quadrant( solarLon[1] );
-    quad0 = AstroOps.quadrant( solarLon[0] );
-    if( quad1 != quad0 ) {
-      final String strings[] =
-            { "SumSol ", "Aut Eq  ", "WinSol ", "Ver Eq " };
-
-      p.append(strings[quad0]);
-      lenLeft -= 7;
+    catch ( IOException ioe ) {
+      System.err.println( "Error writing data: " + ioe );
     }
 
-    // handle DST indicator
-    if ( DST_START == dstDay ) {
-      p.append("DSTime");
-      lenLeft -= 6;
-    }
-    else if ( DST_END == dstDay ) {
-      p.append("STime");
-      lenLeft -= 5;
+    if (g_html) {
+      printEpilogue();
+      g_pw.println( "</BODY>\n</HTML>\n" );
     }
-
-    if (lenLeft < 0 )
-      lenLeft = 0;
-
-    return nextColumn(p, lenLeft, (10 == lenLeft));
   }
 
   /**
-   * Print out the data
+   * Print out consecutive months of data for one site as one
+   * document: CSV output has a single header line and JSON output a
+   * single object; the other formats print each month with its
+   * headings, one after the other.
    *
-   * @param dcd The DarkCalData instance to use
+   * @param dcds The DarkCalData instances to use, in order
    */
-  public void printData(DarkCalData dcd) {
-    DarkCalInput dci = dcd.dci;
-
-    printHeading(dci);
-
-    // print data for each day
-    //
-    int end = (int)(dcd.jdEnd - dcd.jdStart);
-
-    for( int i=0; i<end; i++ ) {
-
-      if (g_html) {
-        if (0 == (i & 1))
-          g_pw.println( "<TR CLASS=\"bar\">\n  <TD>" );
-        else
-          g_pw.println( "<TR>\n  <TD>" );
-      }
-
-      // print day
-      StringBuffer p = printDay( new StringBuffer(), dcd.jdStart, i );
-
-      // print darkest hours
-      p = printDarkness(p, i, dcd);
-
-      // check for lunar & solar quarters and DST, print if found
-      int dstDay = DST_NONE;
-      if ( dcd.dstStart == dcd.jdStart+i )
-        dstDay = DST_START;
-      else if ( dcd.dstEnd == dcd.jdStart+i )
-        dstDay = DST_END;
-
-      p = printEvents(p, i, dcd, dstDay);
-
-      // print rise/set times for Luna
-      p = printTime( p, dcd.moonRS[i].a );
-      p = printTime( p, dcd.moonRS[i].b );
-
-      // print set time for the sun
-      p = printTime( p, dcd.sunRS[i].b );
-
-      // print end of Astronomical Twilight */
-      p = printTime( p, dcd.astTwi[i].b );
-
-      // next day
-      p = printDay( p, dcd.jdStart, i+1, i == end-1 );
-
-      if (!g_tabDelimited && !g_html)
-        p.append(' ');
-
-      // print start of Astronomical Twilight */
-      p = printTime( p, dcd.astTwi[i+1].a );
-
-      // print rise time for the sun     (last column)
-      p = printTime( p, dcd.sunRS[i+1].a, false );
-
-      if (g_html)
-        p.append( "</TD>\n</TR>" );
+  public void printData(DarkCalData dcds[]) {
+    int format = format();
+    if (DarkCalWriter.CSV != format && DarkCalWriter.JSON != format) {
+      for (int m = 0; m < dcds.length; m++)
+        printData(dcds[m]);
+      return;
+    }
 
-      g_pw.println( p.toString() );
+    DarkCalWriter dcw = new DarkCalWriter(g_pw, format);
+    dcw.setEventTimes(g_eventTimes);
+    try {
+      dcw.begin(dcds[0]);
+      for (int m = 0; m < dcds.length; m++)
+        dcw.writeRows(dcds[m]);
+      dcw.end();
+      dcw.flush();
     }
-    if (g_html) {
-      printEpilogue();
-      g_pw.println( "</BODY>\n</HTML>\n" );
+    catch ( IOException ioe ) {
+      System.err.println( "Error writing data: " + ioe );
     }
   }
 
@@ -438,8 +313,7 @@ public class DarkCal {
    * @param dci Month, year, and location to use
    */
   public void calcAndPrint(DarkCalInput dci) {
-    DarkCalCalc dcc = new DarkCalCalc(dci, g_ignoreDst);
-    printData(dcc.dcd);
+    printData(calc(dci).dcd);
   }
 
   /**
@@ -450,7 +324,7 @@ public class DarkCal {
   public void print(DarkCalInput dci) {
 
     try {
-      DarkCalCalc dcc = new DarkCalCalc(dci, g_ignoreDst);
+      DarkCalCalc dcc = calc(dci);
       try {
         printData(dcc.dcd);
       }
@@ -462,16 +336,39 @@ public class DarkCal {
       System.err.println("Error creating data object: " + e);
     }
   }
+  private DarkCalCalc calc(DarkCalInput dci) {
+    return ( null == g_cache ) ? new DarkCalCalc(dci, g_ignoreDst)
+                               : new DarkCalCalc(dci, g_ignoreDst, g_cache);
+  }
+
+  //----------------------------------------------------------------------------
+  // output file extension, or null for text (to the console)
+  //
+  String extension() {
+    if (g_html)
+      return ".html";
+    if (g_tabDelimited)
+      return ".txt";
+    if (g_csv)
+      return ".csv";
+    if (g_json)
+      return ".json";
+    return null;
+  }
+
   //----------------------------------------------------------------------------
   // print usage and exit
   //
   private static void usage(String pn)
   {
     System.err.println(
-        "usage: " + pn + " <month> <year> [-d] [-h] [-t] [-u]\n" +
+        "usage: " + pn + " <month> <year> [-d] [-e] [-h] [-t] [-c] [-j] [-u]\n" +
         "       -d = ignore daylight savings time\n" +
+        "       -e = print the times of lunar phases, solstices & equinoxes\n" +
         "       -h = HTML table output\n" +
         "       -t = tab-delimited output\n" +
+        "       -c = CSV output\n" +
+        "       -j = JSON output\n" +
         "       -u = output time in UTC\n\n" +
         "Notes:\n" +
         " - Command-line options override config file settings.\n" +
@@ -488,10 +385,13 @@ public class DarkCal {
  /**
   * The main program entry point.
   * <P><TT>
-  * usage: DarkCal &lt;month&gt; &lt;year&gt; [-d] [-h] [-t] [-u] <BR>
+  * usage: DarkCal &lt;month&gt; &lt;year&gt; [-d] [-e] [-h] [-t] [-c] [-j] [-u] <BR>
   *        -d = ignore daylight savings time <BR>
+  *        -e = print the times of lunar phases, solstices &amp; equinoxes <BR>
   *        -h = HTML table output <BR>
   *        -t = tab-delimited output <BR>
+  *        -c = CSV output <BR>
+  *        -j = JSON output <BR>
   *        -u = output time in UTC
   * </TT><P>
   * Notes:
@@ -542,12 +442,19 @@ public class DarkCal {
           char c = args[i].charAt(1);
           if ( 'd' == c )
             dc.g_ignoreDst = true;
+          else if ( 'e' == c )
+            dc.g_eventTimes = true;
           else if ( 'h' == c )
             dc.g_html = true;
           else if ( 't' == c )
             dc.g_tabDelimited = true;
+          else if ( 'c' == c )
+            dc.g_csv = true;
+          else if ( 'j' == c )
+            dc.g_json = true;
           else if ( 'u' == c ) {
             dci.tz=0;
+            dci.zone=null;
             dc.g_ignoreDst = true;
           }
           else
@@ -557,19 +464,17 @@ public class DarkCal {
     }
     
 
-    if ( dc.g_tabDelimited && dc.g_html ) {
-      System.err.println( "Error: html and tabDelimited cannot both be specified.\n" );
+    int outputs = (dc.g_tabDelimited ? 1 : 0) + (dc.g_html ? 1 : 0) +
+                  (dc.g_csv ? 1 : 0) + (dc.g_json ? 1 : 0);
+    if ( outputs > 1 ) {
+      System.err.println( "Error: only one of html, tabDelimited, csv and json can be specified.\n" );
       System.exit(-1);
     }
 
     if ( 0D == dci.lon && 0D == dci.lat )
       System.out.println( "Latitude & Longitude are both set to 0. Is this what you intended?\n" );
 
-    String pExt = null;
-    if (dc.g_html)
-      pExt = ".html";
-    else if (dc.g_tabDelimited)
-      pExt = ".txt";
+    String pExt = dc.extension();
 
     if ( null != pExt ) {
       String filename = monthNames[dci.month-1] + dci.year + pExt;
@@ -0,0 +1,302 @@
+/*****************************************************************************\
+ * DarkCalBatch
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <TT>DarkCal</TT> for many sites and months at once: every site of a
+ * <TT>SiteCatalog</TT> over a range of months, with one output file
+ * per site, and a command-line program to run it.
+ * <P>
+ * Each (site, month) is a job on a fixed pool of worker threads. The
+ * jobs share a <TT>PositionMemo</TT>, so the Sun's and Moon's
+ * positions are calculated once for all the sites whose days start at
+ * the same instants (the sites of a time zone, say), rather than once
+ * per site. Jobs are queued site by site, so that the workers are
+ * busy with different months of one site, and the next site of the
+ * same zone finds those months' positions calculated. Sites are
+ * written in catalog order as their months complete, while the
+ * workers go on with the later sites.
+ * <P>
+ * A site's file is named after the site, with the extension
+ * <TT>DarkCal</TT> uses for the format (".txt" for text). CSV and
+ * JSON files hold all the months as one document (see
+ * <TT>DarkCal.printData(DarkCalData[])</TT>); text, tab-delimited
+ * and HTML files hold one table (or page) per month.
+ */
+public class DarkCalBatch {
+
+ /**
+  * Constructor.
+  *
+  * @param sites The sites
+  * @param month First month (1 - 12)
+  * @param year First month's year
+  * @param months Number of months
+  */
+  public DarkCalBatch( SiteCatalog sites, int month, int year, int months ) {
+    m_sites = sites;
+    m_month = month;
+    m_year = year;
+    m_months = months;
+  }
+
+ /**
+  * Set whether Daylight time is ignored.
+  *
+  * @param ignoreDst <TT>true</TT> to ignore Daylight time
+  */
+  public void setIgnoreDst( boolean ignoreDst ) { m_ignoreDst = ignoreDst; }
+
+ /**
+  * Set whether the times of lunar phases and solstices/equinoxes are
+  * written.
+  *
+  * @param eventTimes <TT>true</TT> to write event times
+  */
+  public void setEventTimes( boolean eventTimes ) { m_eventTimes = eventTimes; }
+
+ /**
+  * Set the output format.
+  *
+  * @param format <TT>DarkCalWriter.TEXT</TT>, <TT>TAB_DELIMITED</TT>,
+  *     <TT>HTML</TT>, <TT>CSV</TT>, or <TT>JSON</TT>
+  */
+  public void setFormat( int format ) { m_format = format; }
+
+ /**
+  * Set the number of worker threads.
+  *
+  * @param threads Workers (by default, one per processor)
+  */
+  public void setThreads( int threads ) { m_threads = threads; }
+
+ /**
+  * Get the positions shared by the jobs (of every run of this batch).
+  */
+  public PositionMemo getMemo() { return m_memo; }
+
+ /**
+  * Calculate all the sites and months, and write one file per site.
+  *
+  * @param dir Directory for the output files
+  *
+  * @return The files written, in catalog order
+  *
+  * @throws IOException if a file can't be written, or a month can't be
+  *     calculated
+  */
+  public List<File> run( File dir ) throws IOException {
+    ExecutorService pool = Executors.newFixedThreadPool( m_threads );
+    try {
+      // queue every job before waiting on any
+      List<List<Future<DarkCalData>>> jobs = new ArrayList<List<Future<DarkCalData>>>();
+      for ( int s = 0; s < m_sites.size(); s++ ) {
+        List<Future<DarkCalData>> site = new ArrayList<Future<DarkCalData>>();
+        for ( int k = 0; k < m_months; k++ )
+          site.add( pool.submit( job( s, k ) ) );
+        jobs.add( site );
+      }
+
+      List<File> files = new ArrayList<File>();
+      for ( int s = 0; s < m_sites.size(); s++ ) {
+        DarkCalData dcds[] = new DarkCalData[m_months];
+        for ( int k = 0; k < m_months; k++ )
+          dcds[k] = result( s, jobs.get( s ).get( k ) );
+        jobs.set( s, null );
+        files.add( write( dir, s, dcds ) );
+      }
+      return files;
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // month k of site s
+  private Callable<DarkCalData> job( int s, int k ) {
+    final DarkCalInput dci = new DarkCalInput(
+        ( m_month - 1 + k ) % 12 + 1, m_year + ( m_month - 1 + k ) / 12,
+        m_sites.getLongitude( s ), m_sites.getLatitude( s ), m_sites.getTimeZone( s ) );
+    dci.zone = m_sites.getZone( s );
+    final boolean ignoreDst = m_ignoreDst;
+    return new Callable<DarkCalData>() {
+      public DarkCalData call() {
+        return new DarkCalCalc( dci, ignoreDst, m_memo ).dcd;
+      }
+    };
+  }
+
+  private DarkCalData result( int s, Future<DarkCalData> f ) throws IOException {
+    try {
+      return f.get();
+    }
+    catch ( ExecutionException ee ) {
+      throw new IOException( m_sites.getName( s ) + ": " + ee.getCause(), ee.getCause() );
+    }
+    catch ( InterruptedException ie ) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException( "interrupted" );
+    }
+  }
+
+  private File write( File dir, int s, DarkCalData dcds[] ) throws IOException {
+    DarkCal dc = new DarkCal();
+    dc.g_html = ( DarkCalWriter.HTML == m_format );
+    dc.g_tabDelimited = ( DarkCalWriter.TAB_DELIMITED == m_format );
+    dc.g_csv = ( DarkCalWriter.CSV == m_format );
+    dc.g_json = ( DarkCalWriter.JSON == m_format );
+    dc.g_eventTimes = m_eventTimes;
+    String ext = dc.extension();
+
+    File f = new File( dir, fileName( m_sites.getName( s ) ) +
+                            ( ( null == ext ) ? ".txt" : ext ) );
+    PrintWriter pw = new PrintWriter( new BufferedWriter( new FileWriter( f ) ) );
+    try {
+      dc.setWriter( pw );
+      dc.printData( dcds );
+    }
+    finally {
+      pw.close();
+    }
+    if ( pw.checkError() )
+      throw new IOException( "Error writing " + f );
+    return f;
+  }
+
+  // a site name as a file name
+  private static String fileName( String name ) {
+    return name.replaceAll( "[^A-Za-z0-9._-]+", "_" );
+  }
+
+  //-------------------------------------------------------------------------
+  // print usage and exit
+  //
+  private static void usage( String pn ) {
+    System.err.println(
+        "usage: " + pn + " <sites file> <month> <year> [months] [-d] [-e] [-h|-t|-c|-j]\n" +
+        "       [-o dir] [-n threads]\n" +
+        "       -d = ignore daylight savings time\n" +
+        "       -e = print the times of lunar phases, solstices & equinoxes\n" +
+        "       -h = HTML table output\n" +
+        "       -t = tab-delimited output\n" +
+        "       -c = CSV output\n" +
+        "       -j = JSON output\n" +
+        "       -o = output directory (default: current directory)\n" +
+        "       -n = worker threads (default: one per processor)" );
+    System.exit(-1);
+  }
+
+ /**
+  * The batch program entry point.
+  * <P><TT>
+  * usage: DarkCalBatch &lt;sites file&gt; &lt;month&gt; &lt;year&gt; [months] [-d] [-e] [-h|-t|-c|-j] <BR>
+  *        [-o dir] [-n threads] <BR>
+  *        -d = ignore daylight savings time <BR>
+  *        -e = print the times of lunar phases, solstices &amp; equinoxes <BR>
+  *        -h = HTML table output <BR>
+  *        -t = tab-delimited output <BR>
+  *        -c = CSV output <BR>
+  *        -j = JSON output <BR>
+  *        -o = output directory (default: current directory) <BR>
+  *        -n = worker threads (default: one per processor)
+  * </TT><P>
+  * See <TT>SiteCatalog</TT> for the sites file format.
+  */
+  public static void main( String args[] ) {
+    final String PROCNAME = "DarkCalBatch";
+
+    if ( args.length < 3 )
+      usage( PROCNAME );
+
+    int month = 0, year = 0, months = 1;
+    int format = DarkCalWriter.TEXT, formats = 0, threads = 0;
+    boolean ignoreDst = false, eventTimes = false;
+    File dir = new File( "." );
+    try {
+      month = Integer.parseInt( args[1] );
+      year = Integer.parseInt( args[2] );
+      int i = 3;
+      if ( i < args.length && '-' != args[i].charAt(0) )
+        months = Integer.parseInt( args[i++] );
+      for ( ; i < args.length; i++ ) {
+        if ( 2 != args[i].length() || '-' != args[i].charAt(0) )
+          usage( PROCNAME );
+        char c = args[i].charAt(1);
+        if ( 'd' == c )
+          ignoreDst = true;
+        else if ( 'e' == c )
+          eventTimes = true;
+        else if ( 'h' == c ) {
+          format = DarkCalWriter.HTML;
+          formats++;
+        }
+        else if ( 't' == c ) {
+          format = DarkCalWriter.TAB_DELIMITED;
+          formats++;
+        }
+        else if ( 'c' == c ) {
+          format = DarkCalWriter.CSV;
+          formats++;
+        }
+        else if ( 'j' == c ) {
+          format = DarkCalWriter.JSON;
+          formats++;
+        }
+        else if ( 'o' == c && i + 1 < args.length )
+          dir = new File( args[++i] );
+        else if ( 'n' == c && i + 1 < args.length )
+          threads = Integer.parseInt( args[++i] );
+        else
+          usage( PROCNAME );
+      }
+    }
+    catch ( NumberFormatException nfe ) {
+      usage( PROCNAME );
+    }
+    if ( month < 1 || month > 12 || year <= 0 || months <= 0 || threads < 0 )
+      usage( PROCNAME );
+    if ( formats > 1 ) {
+      System.err.println( "Error: only one of -h, -t, -c and -j can be specified.\n" );
+      System.exit(-1);
+    }
+
+    try {
+      SiteCatalog sites = SiteCatalog.read( new File( args[0] ) );
+      DarkCalBatch batch = new DarkCalBatch( sites, month, year, months );
+      batch.setIgnoreDst( ignoreDst );
+      batch.setEventTimes( eventTimes );
+      batch.setFormat( format );
+      if ( threads > 0 )
+        batch.setThreads( threads );
+      List<File> files = batch.run( dir );
+      System.err.println( "Wrote " + files.size() + " sites, " + months +
+                          " months to " + dir + " (" + batch.getMemo().size() +
+                          " positions calculated, " + batch.getMemo().hits() + " shared)" );
+    }
+    catch ( IOException ioe ) {
+      System.err.println( "Error: " + ioe.getMessage() );
+      System.exit(1);
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private final SiteCatalog m_sites;
+  private final int m_month, m_year, m_months;
+  private boolean m_ignoreDst;
+  private boolean m_eventTimes;
+  private int m_format = DarkCalWriter.TEXT;
+  private int m_threads = Runtime.getRuntime().availableProcessors();
+  private final PositionMemo m_memo = new PositionMemo();
+}
@@ -0,0 +1,272 @@
+/*****************************************************************************\
+ * DarkCalCache
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A directory of <TT>DarkCal</TT> months, so a month already
+ * calculated for a location is read back instead of recalculated.
+ * <P>
+ * Each month is one file, named after the month and keyed by the
+ * month, year, latitude, longitude, time zone and Daylight time flag
+ * (all of which are also stored in the file, and checked on reading).
+ * Files are written under a temporary name and then renamed, so
+ * readers (in this or another process) never see a partial file.
+ * When the files grow past the size limit, the least recently used
+ * ones are deleted.
+ * <P>
+ * File layout (big-endian):
+ * <PRE>
+ *   int     magic ("DCD1")
+ *   short   version
+ *   int     month, year
+ *   double  lat, lon
+ *   UTF     time zone (ZoneOffsets.getName())
+ *   boolean ignoreDst
+ *   long    jdStart, jdEnd
+ *   int     number of days (n)
+ *   per day (n): double jd, sunRS a b c, astTwi a b c, moonRS a b c, moonRS2 a b
+ *   per day (n-1): double dark a b, boolean noDarkness
+ * </PRE>
+ */
+public class DarkCalCache {
+
+ /**
+  * Default size limit, in bytes
+  */
+  public static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+
+  static final int MAGIC = 0x44434431;      // "DCD1"
+  static final short VERSION = 2;
+
+ /**
+  * Constructor, with the default size limit.
+  *
+  * @param dir The cache directory (created if needed)
+  */
+  public DarkCalCache( File dir ) {
+    this( dir, DEFAULT_MAX_BYTES );
+  }
+
+ /**
+  * Constructor.
+  *
+  * @param dir The cache directory (created if needed)
+  * @param maxBytes Size limit for all the cache files, in bytes
+  */
+  public DarkCalCache( File dir, long maxBytes ) {
+    m_dir = dir;
+    m_maxBytes = maxBytes;
+  }
+
+ /**
+  * Read a month from the cache.
+  *
+  * @param dci Month, year, and observer location
+  * @param ignoreDst <TT>true</TT> if Daylight time is ignored
+  *
+  * @return The data, or <TT>null</TT> if the month isn't cached (or
+  *     its file can't be read)
+  */
+  public DarkCalData get( DarkCalInput dci, boolean ignoreDst ) {
+    File f = file( dci, ignoreDst );
+    if ( !f.canRead() )
+      return null;
+    try {
+      DataInputStream in = new DataInputStream(
+          new BufferedInputStream( new FileInputStream( f ) ) );
+      try {
+        DarkCalData dcd = read( in, dci, ignoreDst );
+        if ( null != dcd )
+          f.setLastModified( System.currentTimeMillis() );   // recently used
+        return dcd;
+      }
+      finally {
+        in.close();
+      }
+    }
+    catch ( IOException ioe ) {
+      return null;
+    }
+  }
+
+ /**
+  * Write a month to the cache, and evict the least recently used
+  * months if the cache has grown past its limit.
+  *
+  * @param dcd The data for one month, as <TT>DarkCalCalc</TT>
+  *     calculates it
+  *
+  * @return <TT>false</TT> if the data isn't a single month, or
+  *     couldn't be written
+  */
+  public boolean put( DarkCalData dcd ) {
+    DarkCalInput dci = dcd.dci;
+    if ( dcd.jdStart != DateOps.dmyToDay( 1, dci.month, dci.year ) ||
+         dcd.jdEnd - dcd.jdStart + 2 != dcd.jd.length )
+      return false;
+
+    File tmp = null;
+    try {
+      if ( !m_dir.isDirectory() && !m_dir.mkdirs() )
+        return false;
+      tmp = File.createTempFile( PREFIX, TMP_SUFFIX, m_dir );
+      DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream( new FileOutputStream( tmp ) ) );
+      try {
+        write( out, dcd );
+      }
+      finally {
+        out.close();
+      }
+      Files.move( tmp.toPath(), file( dci, dcd.ignoreDst ).toPath(),
+                  StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+    catch ( IOException ioe ) {
+      if ( null != tmp )
+        tmp.delete();
+      return false;
+    }
+
+    evict();
+    return true;
+  }
+
+  //-------------------------------------------------------------------------
+  // cache file name, e.g. dcd201107_40.0_-75.8_UTC-5.dat (_u when
+  // ignoring DST; a zone id's slashes become dashes)
+  //
+  private File file( DarkCalInput dci, boolean ignoreDst ) {
+    String mo = ( dci.month < 10 ) ? "0" + dci.month : "" + dci.month;
+    String zone = ZoneOffsets.of( dci ).getName().replace( '/', '-' ).replace( ':', '-' );
+    return new File( m_dir, PREFIX + dci.year + mo + "_" + dci.lat + "_" +
+                     dci.lon + "_" + zone + ( ignoreDst ? "_u" : "" ) + SUFFIX );
+  }
+
+  private static void write( DataOutputStream out, DarkCalData dcd ) throws IOException {
+    DarkCalInput dci = dcd.dci;
+    out.writeInt( MAGIC );
+    out.writeShort( VERSION );
+    out.writeInt( dci.month );
+    out.writeInt( dci.year );
+    out.writeDouble( dci.lat );
+    out.writeDouble( dci.lon );
+    out.writeUTF( dcd.zone.getName() );
+    out.writeBoolean( dcd.ignoreDst );
+    out.writeLong( dcd.jdStart );
+    out.writeLong( dcd.jdEnd );
+
+    int n = dcd.jd.length;
+    out.writeInt( n );
+    for ( int i = 0; i < n; i++ ) {
+      out.writeDouble( dcd.jd[i] );
+      writeTimes( out, dcd.sunRS[i], true );
+      writeTimes( out, dcd.astTwi[i], true );
+      writeTimes( out, dcd.moonRS[i], true );
+      writeTimes( out, dcd.moonRS2[i], false );
+    }
+    for ( int i = 0; i < n-1; i++ ) {
+      writeTimes( out, dcd.dark[i], false );
+      out.writeBoolean( dcd.noDarkness[i] );
+    }
+  }
+
+  private static void writeTimes( DataOutputStream out, TimePair tp, boolean withC )
+          throws IOException
+  {
+    out.writeDouble( tp.a );
+    out.writeDouble( tp.b );
+    if ( withC )
+      out.writeDouble( tp.c );
+  }
+
+  // null if the file is for another version or input
+  private static DarkCalData read( DataInputStream in, DarkCalInput dci, boolean ignoreDst )
+          throws IOException
+  {
+    if ( MAGIC != in.readInt() || VERSION != in.readShort() ||
+         dci.month != in.readInt() || dci.year != in.readInt() ||
+         dci.lat != in.readDouble() || dci.lon != in.readDouble() ||
+         !ZoneOffsets.of( dci ).getName().equals( in.readUTF() ) ||
+         ignoreDst != in.readBoolean() )
+      return null;
+
+    long jdStart = in.readLong(), jdEnd = in.readLong();
+    int n = in.readInt();
+    if ( n < 2 || n > DarkCalData.DAYS )
+      return null;
+
+    DarkCalData dcd = new DarkCalData( dci, ignoreDst, n );
+    dcd.jdStart = jdStart;
+    dcd.jdEnd = jdEnd;
+    for ( int i = 0; i < n; i++ ) {
+      dcd.jd[i] = in.readDouble();
+      dcd.sunRS[i] = readTimes( in, true );
+      dcd.astTwi[i] = readTimes( in, true );
+      dcd.moonRS[i] = readTimes( in, true );
+      dcd.moonRS2[i] = readTimes( in, false );
+    }
+    for ( int i = 0; i < n-1; i++ ) {
+      dcd.dark[i] = readTimes( in, false );
+      dcd.noDarkness[i] = in.readBoolean();
+    }
+    return dcd;
+  }
+
+  private static TimePair readTimes( DataInputStream in, boolean withC )
+          throws IOException
+  {
+    double a = in.readDouble(), b = in.readDouble();
+    return new TimePair( a, b, withC ? in.readDouble() : 0D );
+  }
+
+  // delete least recently used files until the total is within the limit
+  //
+  private synchronized void evict() {
+    File files[] = m_dir.listFiles( new FilenameFilter() {
+      public boolean accept( File dir, String name ) {
+        return name.startsWith( PREFIX ) && name.endsWith( SUFFIX );
+      }
+    } );
+    if ( null == files )
+      return;
+
+    long total = 0;
+    for ( File f : files )
+      total += f.length();
+    if ( total <= m_maxBytes )
+      return;
+
+    final long used[] = new long[files.length];
+    Integer order[] = new Integer[files.length];
+    for ( int i = 0; i < files.length; i++ ) {
+      used[i] = files[i].lastModified();
+      order[i] = i;
+    }
+    Arrays.sort( order, new Comparator<Integer>() {
+      public int compare( Integer x, Integer y ) {
+        return ( used[x] < used[y] ) ? -1 : ( ( used[x] == used[y] ) ? 0 : 1 );
+      }
+    } );
+    for ( int i = 0; i < order.length && total > m_maxBytes; i++ ) {
+      File f = files[order[i]];
+      long len = f.length();
+      if ( f.delete() )
+        total -= len;
+    }
+  }
+
+  private static final String PREFIX = "dcd";
+  private static final String SUFFIX = ".dat";
+  private static final String TMP_SUFFIX = ".tmp";
+
+  private final File m_dir;
+  private final long m_maxBytes;
+}
@@ -5,10 +5,22 @@
 package com.nzv.astro.ephemeris.planetary;
 
 //import java.io.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A class to calculate and store <TT>DarkCal</TT> data, and optionally
  * cache the data to a file.
+ * <P>
+ * Data is calculated either for the month given in the input, or for
+ * an arbitrary range of days (a whole year, say) as one contiguous
+ * table. For a range, the days are split into runs that are computed
+ * on a fork-join pool; the darkest hours, which depend on the next
+ * day, are filled in afterwards.
+ * <P>
+ * Each day starts at local midnight, by the input's
+ * <TT>ZoneOffsets</TT> (its zone rules, or its integer time zone with
+ * U.S. Daylight time).
  */
 public class DarkCalCalc {
   private DarkCalCalc() {}
@@ -23,13 +35,83 @@ public class DarkCalCalc {
     calc(dci, ignoreDst);
   }
 
+ /**
+  * Constructor, sharing Sun and Moon positions with calculations for
+  * other sites
+  *
+  * @param dci Month, year, and observer location to use
+  * @param ignoreDst <TT>true</TT> to ignore Daylight time
+  * @param memo The positions to share
+  */
+  public DarkCalCalc(DarkCalInput dci, boolean ignoreDst, PositionMemo memo) {
+    m_memo = memo;
+    calc(dci, ignoreDst);
+  }
+
+ /**
+  * Constructor, reading the month from a cache if it's there, and
+  * adding it otherwise
+  *
+  * @param dci Month, year, and observer location to use
+  * @param ignoreDst <TT>true</TT> to ignore Daylight time
+  * @param cache The cache to use
+  */
+  public DarkCalCalc(DarkCalInput dci, boolean ignoreDst, DarkCalCache cache) {
+    dcd = cache.get(dci, ignoreDst);
+    if ( null == dcd ) {
+      calc(dci, ignoreDst);
+      cache.put(dcd);
+    }
+  }
+
+ /**
+  * Constructor, for a range of days, on a shared pool
+  *
+  * @param dci Observer location to use (the month and year are ignored)
+  * @param jdStart First day (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  * @param jdEnd Day after the last one
+  * @param ignoreDst <TT>true</TT> to ignore Daylight time
+  */
+  public DarkCalCalc(DarkCalInput dci, long jdStart, long jdEnd, boolean ignoreDst) {
+    this(dci, jdStart, jdEnd, ignoreDst, Pool.POOL);
+  }
+
+ /**
+  * Constructor, for a range of days
+  *
+  * @param dci Observer location to use (the month and year are ignored)
+  * @param jdStart First day (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  * @param jdEnd Day after the last one
+  * @param ignoreDst <TT>true</TT> to ignore Daylight time
+  * @param pool The pool to run on
+  */
+  public DarkCalCalc(DarkCalInput dci, long jdStart, long jdEnd, boolean ignoreDst,
+                     ForkJoinPool pool) {
+    calc(dci, jdStart, jdEnd, ignoreDst, pool);
+  }
+
+ /**
+  * Constructor, for several consecutive months, on a shared pool
+  *
+  * @param dci First month, year, and observer location to use
+  * @param months Number of months (12 for a year)
+  * @param ignoreDst <TT>true</TT> to ignore Daylight time
+  */
+  public DarkCalCalc(DarkCalInput dci, int months, boolean ignoreDst) {
+    int m = dci.month - 1 + months;
+    calc(dci, DateOps.dmyToDay( 1, dci.month, dci.year ),
+         DateOps.dmyToDay( 1, m % 12 + 1, dci.year + m / 12 ), ignoreDst, Pool.POOL);
+  }
+
   DarkCalData dcd;
 
+  private PositionMemo m_memo;    // shared positions, or null
+
   //----------------------------------------------------------------------------
   // figure out the darkest hours for day (i) & put into dark[i]
   //
   private void findDark(int i) {
-    if ( i > DarkCalData.DAYS-2 ) {
+    if ( i > dcd.jd.length-2 ) {
       System.err.println("illegal index");
       return;
     }
@@ -81,57 +163,120 @@ public class DarkCalCalc {
   */
   void calc(DarkCalInput dci, boolean ignoreDst)
   {
-    dcd = new DarkCalData(dci, ignoreDst);
     // calc. start and end days
     //
-    dcd.jdStart = DateOps.dmyToDay( 1, dci.month, dci.year );
-    dcd.jdEnd = ( dci.month < 12 ) ?
+    long jdStart = DateOps.dmyToDay( 1, dci.month, dci.year );
+    long jdEnd = ( dci.month < 12 ) ?
         DateOps.dmyToDay( 1, dci.month + 1, dci.year ) :
         DateOps.dmyToDay( 1, 1, dci.year + 1 );
 
-    int end = (int)(dcd.jdEnd - dcd.jdStart);
+    calc(dci, jdStart, jdEnd, ignoreDst, null);
+  }
+
+ /**
+  * Calculate all the data for a range of days
+  *
+  * @param dci Observer location to use
+  * @param jdStart First day
+  * @param jdEnd Day after the last one
+  * @param ingnoreDst <TT>true</TT> to ignore Daylight time
+  * @param pool The pool to run on, or <TT>null</TT> to calculate on
+  *     this thread
+  */
+  void calc(DarkCalInput dci, long jdStart, long jdEnd, boolean ignoreDst,
+            ForkJoinPool pool)
+  {
+    int end = (int)(jdEnd - jdStart);
 
-    // fill in data for month in question
+    dcd = new DarkCalData(dci, ignoreDst, end+2);
+    dcd.jdStart = jdStart;
+    dcd.jdEnd = jdEnd;
+
+    // fill in data for the days in question
     //
+    Days days = new Days( 0, end+2 );
+    if ( null == pool )
+      days.compute();
+    else
+      pool.invoke( days );
 
-    double tzAdj = (double)dci.tz * Astro.DAYS_PER_HOUR;
-    dcd.dstStart = DateOps.dstStart( dci.year );
-    dcd.dstEnd = DateOps.dstEnd( dci.year );
-    PlanetData pd = new PlanetData();
-    ObsInfo oi = new ObsInfo( new Latitude(dci.lat), new Longitude(dci.lon), dci.tz );
+    // clone the moon array
+    for(int j=0; j<dcd.moonRS.length; j++ )
+      dcd.moonRS2[j] = new TimePair( dcd.moonRS[j] );
 
-    for( int i=0; i<=end+1; i++ ) {
-      long day = dcd.jdStart + i;
+    // fill in the dark[] array (in order: each day may borrow the
+    // next day's moon times)
+    for( int i=0; i<=end; i++ )
+      findDark(i);
+  }
 
-      // automatically adjust for DST if enabled
-      // This 'rough' method will be off by one on moon rise/set between
-      //   midnight and 2:00 on "clock change" days. (sun & astTwi never
-      //   occur at these times.)
-      //
-      double dstAdj =
-          ( false == ignoreDst && day>=dcd.dstStart && day<dcd.dstEnd) ?
-          Astro.DAYS_PER_HOUR : 0.;
+  //----------------------------------------------------------------------------
+  // a run of consecutive days
+  //
+  private class Days extends RecursiveAction {
+    private final int m_from, m_to;
+
+    Days( int from, int to ) {
+      m_from = from;
+      m_to = to;
+    }
+
+    protected void compute() {
+      if ( m_to - m_from >= 2*MIN_DAYS && null != getPool() ) {
+        int mid = ( m_from + m_to ) >>> 1;
+        invokeAll( new Days( m_from, mid ), new Days( mid, m_to ) );
+        return;
+      }
+
+      DarkCalInput dci = dcd.dci;
+      ZoneOffsets.Year year = null;
+      PlanetData pd = new PlanetData();
+      ObsInfo oi = new ObsInfo( new Latitude(dci.lat), new Longitude(dci.lon), dci.tz );
+
+      // consecutive days share positions (except across a DST change)
+      RiseSetSeries sunSeries = new RiseSetSeries( RiseSet.SUN, oi, pd );
+      RiseSetSeries moonSeries = new RiseSetSeries( RiseSet.MOON, oi, pd );
+      sunSeries.setMemo( m_memo );
+      moonSeries.setMemo( m_memo );
+      SolarEvents se = new SolarEvents();
+
+      for( int i=m_from; i<m_to; i++ ) {
+        long day = dcd.jdStart + i;
 
-      dcd.jd[i] = (double)day - (tzAdj + dstAdj) - .5;
+        // automatically adjust for DST if enabled
+        // This 'rough' method will be off by one on moon rise/set between
+        //   midnight and 2:00 on "clock change" days. (sun & astTwi never
+        //   occur at these times.)
+        //
+        if ( null == year || day >= year.next )
+          year = dcd.zone.year( day );
+        int k = year.index( day );
+        double offset = dcd.ignoreDst ? year.standard[k] : year.offset[k];
 
-      // calculate rise/set times for the sun
-      dcd.sunRS[i] = RiseSet.getTimes( RiseSet.SUN, dcd.jd[i], oi, pd );
+        dcd.jd[i] = (double)day - offset * Astro.DAYS_PER_HOUR - .5;
 
-      // calculate rise/set times for Astronomical Twilight
-      dcd.astTwi[i] = RiseSet.getTimes( RiseSet.ASTRONOMICAL_TWI, dcd.jd[i], oi, pd );
+        // calculate rise/set times for the sun and Astronomical Twilight
+        sunSeries.getSolarEvents( dcd.jd[i], se );
+        dcd.sunRS[i] = new TimePair( se.rise[SolarEvents.SUNRISE],
+                                     se.set[SolarEvents.SUNRISE], se.transit );
+        dcd.astTwi[i] = new TimePair( se.rise[SolarEvents.ASTRONOMICAL],
+                                      se.set[SolarEvents.ASTRONOMICAL], se.transit );
 
-      // calculate rise/set time for Luna )
-      dcd.moonRS[i] = RiseSet.getTimes( RiseSet.MOON, dcd.jd[i], oi, pd );
+        // calculate rise/set time for Luna )
+        dcd.moonRS[i] = moonSeries.getTimes( RiseSet.MOON, dcd.jd[i] );
+      }
     }
 
-    // clone the moon array
-    for(int j=0; j<dcd.moonRS.length; j++ )
-      dcd.moonRS2[j] = new TimePair( dcd.moonRS[j] );
+    private static final long serialVersionUID = 1L;
+  }
 
-    // fill in the dark[] array
-    for( int i=0; i<=end; i++ )
-      findDark(i);
+  // default pool, created on first use
+  private static class Pool {
+    static final ForkJoinPool POOL = new ForkJoinPool();
   }
 
-};  // end class DarkCalData
+  // shortest run of days worth splitting off (each run starts its
+  // position series afresh)
+  private static final int MIN_DAYS = 8;
 
+};  // end class DarkCalData
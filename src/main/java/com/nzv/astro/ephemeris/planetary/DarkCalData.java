@@ -13,7 +13,8 @@ public class DarkCalData /*implements Serializable*/ {
   static final int DAYS=33;     // 31 max plus one on either side
 
   DarkCalInput dci;
-  long jdStart, jdEnd, dstStart, dstEnd;
+  ZoneOffsets zone;
+  long jdStart, jdEnd;
   boolean ok, ignoreDst, cacheData, noDarkness[];
   double jd[];
   TimePair sunRS[], moonRS[], moonRS2[], astTwi[], dark[];
@@ -21,7 +22,7 @@ public class DarkCalData /*implements Serializable*/ {
   /**
    * Default constructor
    */
-  DarkCalData() { init( false ); }
+  DarkCalData() { init( false, DAYS ); }
 
   /**
    * Explicit constructor
@@ -31,18 +32,33 @@ public class DarkCalData /*implements Serializable*/ {
    */
   DarkCalData(DarkCalInput dci, boolean ignoreDst) {
     this.dci = dci;
+    this.zone = ZoneOffsets.of( dci );
     this.ignoreDst = ignoreDst;
-    init( true );
+    init( true, DAYS );
   }
 
-  private void init( boolean haveDCI ) {
-    sunRS = new TimePair[DAYS];
-    moonRS = new TimePair[DAYS];
-    moonRS2 = new TimePair[DAYS];
-    astTwi = new TimePair[DAYS];
-    dark = new TimePair[DAYS];
-    jd = new double[DAYS];
-    noDarkness = new boolean[DAYS];
+  /**
+   * Explicit constructor, for an arbitrary date range
+   *
+   * @param dci Location to use
+   * @param ignoreDst <TT>true</TT> to ignore Daylight time
+   * @param days Number of days in the range, plus one on either side
+   */
+  DarkCalData(DarkCalInput dci, boolean ignoreDst, int days) {
+    this.dci = dci;
+    this.zone = ZoneOffsets.of( dci );
+    this.ignoreDst = ignoreDst;
+    init( true, days );
+  }
+
+  private void init( boolean haveDCI, int days ) {
+    sunRS = new TimePair[days];
+    moonRS = new TimePair[days];
+    moonRS2 = new TimePair[days];
+    astTwi = new TimePair[days];
+    dark = new TimePair[days];
+    jd = new double[days];
+    noDarkness = new boolean[days];
 
     ok = haveDCI;
   }
@@ -36,6 +36,20 @@ public class DarkCalInput /*implements Serializable*/ {
     this.tz = tz;
   }
 
+ /**
+  * Explicit constructor, with a time zone id.
+  *
+  * @param month Month to use
+  * @param year Year to use
+  * @param lon Longitude to use
+  * @param lat Latitude to use
+  * @param zone Time zone to use (see <TT>zone</TT>)
+  */
+  public DarkCalInput( int month, int year, double lon, double lat, String zone ) {
+    this( month, year, lon, lat, 0 );
+    this.zone = zone;
+  }
+
  /**
   * Month to process
   */
@@ -58,7 +72,17 @@ public class DarkCalInput /*implements Serializable*/ {
 
  /**
   * Observer's time zone offset relative to UTC (-12 to 12 inclusive).
+  * Daylight time is by the U.S. rules of <TT>DateOps.dstStart()</TT>
+  * and <TT>DateOps.dstEnd()</TT>, unless <TT>zone</TT> is set.
   */
   public int tz;
+
+ /**
+  * Observer's time zone, if not <TT>null</TT>: a <TT>java.time</TT>
+  * zone id ("Europe/Paris", "Australia/Adelaide") or a fixed offset in
+  * hours ("5.5"), which takes the place of <TT>tz</TT> (see
+  * <TT>ZoneOffsets.of()</TT>).
+  */
+  public String zone;
 };
 
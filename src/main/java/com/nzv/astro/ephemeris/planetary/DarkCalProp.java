@@ -20,6 +20,7 @@
 package com.nzv.astro.ephemeris.planetary;
 
 import java.io.*;
+import java.time.DateTimeException;
 import java.util.Properties;
 
 import com.nzv.astro.ephemeris.planetary.util.FileU;
@@ -97,9 +98,24 @@ public class DarkCalProp {
     if ( null != p )
       dci.lat = Double.parseDouble( p );
 
+    // an integer time zone (with U.S. Daylight time), or a zone id
     p = cf.getProperty( "timeZone" );
-    if ( null != p )
-      dci.tz = Integer.parseInt( p );
+    if ( null != p ) {
+      try {
+        dci.tz = Integer.parseInt( p );
+        dci.zone = null;
+      }
+      catch( NumberFormatException nfe ) {
+        try {
+          ZoneOffsets.of( p );
+          dci.zone = p;
+        }
+        catch( DateTimeException dte ) {
+          System.err.println( "Unknown timeZone " + p + ": " + dte.getMessage() );
+          return false;
+        }
+      }
+    }
 
     p = cf.getProperty( "htmlOutput" );
     if ( null != p )
@@ -113,10 +129,30 @@ public class DarkCalProp {
     if ( null != p )
       dc.g_tabDelimited = Boolean.valueOf( p ).booleanValue();
 
+    p = cf.getProperty( "eventTimes" );
+    if ( null != p )
+      dc.g_eventTimes = Boolean.valueOf( p ).booleanValue();
+
+    p = cf.getProperty( "csvOutput" );
+    if ( null != p )
+      dc.g_csv = Boolean.valueOf( p ).booleanValue();
+
+    p = cf.getProperty( "jsonOutput" );
+    if ( null != p )
+      dc.g_json = Boolean.valueOf( p ).booleanValue();
+
+    p = cf.getProperty( "cacheDir" );
+    if ( null != p ) {
+      String max = cf.getProperty( "cacheMaxKb" );
+      dc.g_cache = ( null == max ) ? new DarkCalCache( new File( p ) ) :
+          new DarkCalCache( new File( p ), 1024L * Long.parseLong( max ) );
+    }
+
     p = cf.getProperty( "useUTC" );
     if ( null != p ) {
       if ( Boolean.valueOf( p ).booleanValue() ) {
         dci.tz = 0;
+        dci.zone = null;
         dc.g_ignoreDst = true;
       }
     }
@@ -132,16 +168,29 @@ public class DarkCalProp {
             "# " + CFG_FILENAME + "\n# Note: East and North are positive\n" +
             "# e.g., Philadelphia, PA, US is latitude -75.16, longitude 39.95,\n" +
             "#       and timeZone -5\n" +
+            "# timeZone may also be a zone id, with its own Daylight time rules\n" +
+            "# (e.g. Europe/Paris, Asia/Kolkata, Australia/Adelaide), or a\n" +
+            "# fractional offset in hours (e.g. 5.5)\n" +
             "longitude=0.0\nlatitude=0.0\ntimeZone=0\n\n" +
             "# Set this to true to ignore Daylight time:\n" +
             "ignoreDST=false\n\n" +
+            "# Set this to true to print the times of lunar phases,\n" +
+            "# solstices and equinoxes:\n" +
+            "eventTimes=false\n\n" +
             "# Set this to true to use UTC (this overrides timeZone & DST)\n" +
             "useUTC=false\n\n" +
             "# Set this to true to output to an HTML file:\n" +
             "htmlOutput=false\n\n" +
             "# Set this to true to produce a text file with tab-delimited fields:\n" +
-            "# (Note: html & tabs are mutually exclusive!)\n" +
-            "tabDelimited=false\n" );
+            "# (Note: html, tabs, csv & json are mutually exclusive!)\n" +
+            "tabDelimited=false\n\n" +
+            "# Set this to true to produce a CSV file:\n" +
+            "csvOutput=false\n\n" +
+            "# Set this to true to produce a JSON file:\n" +
+            "jsonOutput=false\n\n" +
+            "# Uncomment to keep calculated months in this directory,\n" +
+            "# using up to cacheMaxKb kilobytes:\n" +
+            "#cacheDir=dcd\n#cacheMaxKb=16384\n" );
         pw.close();
       }
     }
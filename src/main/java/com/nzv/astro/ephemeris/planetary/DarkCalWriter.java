@@ -0,0 +1,559 @@
+/*****************************************************************************\
+ * DarkCalWriter
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.io.*;
+import java.nio.charset.Charset;
+
+/**
+ * Writes <TT>DarkCal</TT> data to a stream, one day per row, as text
+ * (the columns <TT>DarkCal</TT> prints), tab-delimited text, HTML
+ * table rows, CSV, or JSON.
+ * <P>
+ * Each row is formatted into a reusable character buffer and written
+ * with a single call, so no strings are built per cell or per row.
+ * The lunar and solar quarter checks share one <TT>PlanetData</TT>,
+ * and a day's end-of-day longitudes serve as the next day's start.
+ * <P>
+ * For text, tab-delimited and HTML output, only the rows are written
+ * (<TT>DarkCal</TT> adds the headings). CSV output is a header line
+ * followed by one line per day:
+ * <PRE>
+ *   date,dark_start,dark_end,events,moon_rise,moon_set,sunset,ast_twi_end,ast_twi_start,sunrise
+ *   2011-07-01,22:38,03:36,NM,05:52,20:52,20:36,22:38,03:36,05:38
+ * </PRE>
+ * JSON output is a single object:
+ * <PRE>
+ *   {"latitude":40.0,"longitude":-75.8,"timeZone":-5,"ignoreDst":false,"days":[
+ *   {"date":"2011-07-01","darkStart":"22:38","darkEnd":"03:36","events":["NM"],
+ *    "moonRise":"05:52","moonSet":"20:52","sunset":"20:36","astTwiEnd":"22:38",
+ *    "astTwiStart":"03:36","sunrise":"05:38"},
+ *   ...]}
+ * </PRE>
+ * The time zone is the input's integer one, or its zone id (a
+ * string). Times are local (hh:mm). The twilight start and sunrise
+ * are the next morning's. A missing time (or the darkest hours on a day with
+ * no darkness) is empty in CSV and <TT>null</TT> in JSON.
+ * <P>
+ * Lunar phases and solstices/equinoxes are found by a change of
+ * quadrant over the day. With <TT>setEventTimes()</TT>, the instant
+ * of each is also found (with <TT>LunarCalc.quarterChange()</TT> and
+ * <TT>SolarCalc.seasonChange()</TT>) and printed after it: "FM 14:22"
+ * in a wider text column, "FM@14:22" in CSV and JSON.
+ */
+public class DarkCalWriter {
+
+ /**
+  * Output format (pseudo-enum)
+  */
+  public static final int TEXT = 0, TAB_DELIMITED = 1, HTML = 2, CSV = 3, JSON = 4;
+
+ /**
+  * Constructor.
+  *
+  * @param out Where the output goes
+  * @param format TEXT, TAB_DELIMITED, HTML, CSV, or JSON
+  */
+  public DarkCalWriter( Writer out, int format ) {
+    m_out = out;
+    m_format = format;
+  }
+
+ /**
+  * Constructor, for UTF-8 output to a byte stream.
+  *
+  * @param out Where the output goes
+  * @param format TEXT, TAB_DELIMITED, HTML, CSV, or JSON
+  */
+  public DarkCalWriter( OutputStream out, int format ) {
+    this( new BufferedWriter( new OutputStreamWriter( out, Charset.forName( "UTF-8" ) ) ),
+          format );
+  }
+
+ /**
+  * Write all the days. For CSV and JSON this is a complete document;
+  * for the other formats it is the table rows only.
+  *
+  * @param dcd The data to write
+  *
+  * @throws IOException if the output can't be written
+  */
+  public void write( DarkCalData dcd ) throws IOException {
+    begin( dcd );
+    writeRows( dcd );
+    end();
+  }
+
+ /**
+  * Start a document: the CSV header line, or the opening of the JSON
+  * object (with the location of <TT>dcd</TT>). Nothing for the other
+  * formats. Any number of <TT>writeRows()</TT> calls (for consecutive
+  * months of one site, say) may follow, then <TT>end()</TT>.
+  *
+  * @param dcd The data whose location heads the document
+  *
+  * @throws IOException if the output can't be written
+  */
+  public void begin( DarkCalData dcd ) throws IOException {
+    m_rows = 0;
+    if ( CSV == m_format )
+      m_out.write( "date,dark_start,dark_end,events,moon_rise,moon_set," +
+                   "sunset,ast_twi_end,ast_twi_start,sunrise\n" );
+    else if ( JSON == m_format )
+      m_out.write( "{\"latitude\":" + dcd.dci.lat + ",\"longitude\":" + dcd.dci.lon +
+                   ",\"timeZone\":" + timeZone( dcd ) + ",\"ignoreDst\":" + dcd.ignoreDst +
+                   ",\"days\":[\n" );
+  }
+
+ /**
+  * Write all the days of some data, as rows of the current document.
+  *
+  * @param dcd The data to write
+  *
+  * @throws IOException if the output can't be written
+  */
+  public void writeRows( DarkCalData dcd ) throws IOException {
+    int end = (int)(dcd.jdEnd - dcd.jdStart);
+    for( int i=0; i<end; i++ )
+      writeRow( dcd, i );
+  }
+
+ /**
+  * End a document: the close of the JSON object. Nothing for the
+  * other formats.
+  *
+  * @throws IOException if the output can't be written
+  */
+  public void end() throws IOException {
+    if ( JSON == m_format )
+      m_out.write( "]}\n" );
+  }
+
+ /**
+  * Write one day.
+  *
+  * @param dcd The data to write
+  * @param i The day's index in the data
+  *
+  * @throws IOException if the output can't be written
+  */
+  public void writeRow( DarkCalData dcd, int i ) throws IOException {
+    m_len = 0;
+    switch ( m_format ) {
+    case CSV:
+      csvRow( dcd, i );
+      break;
+    case JSON:
+      jsonRow( dcd, i );
+      break;
+    default:
+      textRow( dcd, i );
+      break;
+    }
+    m_out.write( m_buf, 0, m_len );
+    m_rows++;
+  }
+
+ /**
+  * Flush the output.
+  *
+  * @throws IOException if the output can't be written
+  */
+  public void flush() throws IOException {
+    m_out.flush();
+  }
+
+ /**
+  * Set whether the times of lunar phases and solstices/equinoxes are
+  * written. The text events column is then
+  * <TT>EXTRA_EVENT_WIDTH</TT> characters wider.
+  *
+  * @param eventTimes <TT>true</TT> to write event times
+  */
+  public void setEventTimes( boolean eventTimes ) {
+    m_eventTimes = eventTimes;
+  }
+
+ /**
+  * Extra width of the text events column with event times
+  */
+  public static final int EXTRA_EVENT_WIDTH = 12;
+
+  //-------------------------------------------------------------------------
+  // text, tab-delimited or HTML row, in DarkCal's layout
+  //
+  private void textRow( DarkCalData dcd, int i ) {
+    boolean html = ( HTML == m_format );
+    if ( html ) {
+      append( ( 0 == (i & 1) ) ? "<TR CLASS=\"bar\">\n  <TD>" : "<TR>\n  <TD>" );
+      append( LINE_SEPARATOR );
+    }
+
+    // day
+    day( dcd.jdStart + i );
+    nextColumn( 2, false );
+
+    // darkest hours, or 'none'
+    if ( dcd.noDarkness[i] ) {
+      append( " -- none -- " );
+      nextColumn( 3, false );
+    }
+    else {
+      time( dcd.dark[i].a );
+      append( " - " );
+      time( dcd.dark[i].b );
+      nextColumn( 2, false );
+    }
+
+    // lunar & solar quarters and DST
+    int width = m_eventTimes ? EVENT_WIDTH + EXTRA_EVENT_WIDTH : EVENT_WIDTH;
+    int lenLeft = width;
+    int ev = events( dcd, i );
+    if ( 0 != ( ev & LUNAR_EVENT ) ) {
+      append( LUNAR_TEXT[ev & QUAD_MASK] );
+      lenLeft -= 3;
+      lenLeft -= textEventTime( lunarTime( dcd, i ) );
+    }
+    if ( 0 != ( ev & SOLAR_EVENT ) ) {
+      append( SOLAR_TEXT[( ev >> SOLAR_SHIFT ) & QUAD_MASK] );
+      lenLeft -= 7;
+      lenLeft -= textEventTime( solarTime( dcd, i ) );
+    }
+    int dst = dstChange( dcd, dcd.jdStart + i );
+    if ( DST_START == dst ) {
+      append( "DSTime" );
+      lenLeft -= 6;
+    }
+    else if ( DST_END == dst ) {
+      append( "STime" );
+      lenLeft -= 5;
+    }
+    if ( lenLeft < 0 )
+      lenLeft = 0;
+    nextColumn( lenLeft, width == lenLeft );
+
+    timeColumn( dcd.moonRS[i].a );
+    timeColumn( dcd.moonRS[i].b );
+    timeColumn( dcd.sunRS[i].b );
+    timeColumn( dcd.astTwi[i].b );
+
+    // next day
+    day( dcd.jdStart + i + 1 );
+    nextColumn( 2, false );
+    if ( TEXT == m_format )
+      append( ' ' );
+
+    timeColumn( dcd.astTwi[i+1].a );
+    time( dcd.sunRS[i+1].a );
+
+    if ( html )
+      append( "</TD>\n</TR>" );
+    append( LINE_SEPARATOR );
+  }
+
+  private void csvRow( DarkCalData dcd, int i ) {
+    date( dcd.jdStart + i );
+    append( ',' );
+    if ( !dcd.noDarkness[i] )
+      time( dcd.dark[i].a );
+    append( ',' );
+    if ( !dcd.noDarkness[i] )
+      time( dcd.dark[i].b );
+    append( ',' );
+
+    int first = m_len;
+    int ev = events( dcd, i );
+    if ( 0 != ( ev & LUNAR_EVENT ) ) {
+      append( LUNAR_NAME[ev & QUAD_MASK] );
+      eventTime( lunarTime( dcd, i ) );
+    }
+    if ( 0 != ( ev & SOLAR_EVENT ) ) {
+      if ( m_len > first )
+        append( ' ' );
+      append( SOLAR_NAME[( ev >> SOLAR_SHIFT ) & QUAD_MASK] );
+      eventTime( solarTime( dcd, i ) );
+    }
+    int dst = dstChange( dcd, dcd.jdStart + i );
+    if ( DST_NONE != dst ) {
+      if ( m_len > first )
+        append( ' ' );
+      append( DST_NAME[dst] );
+    }
+
+    double t[] = times( dcd, i );
+    for ( int j = 0; j < t.length; j++ ) {
+      append( ',' );
+      time( t[j] );
+    }
+    append( '\n' );
+  }
+
+  private void jsonRow( DarkCalData dcd, int i ) {
+    if ( m_rows > 0 )
+      append( ",\n" );
+    append( "{\"date\":\"" );
+    date( dcd.jdStart + i );
+    append( "\",\"darkStart\":" );
+    jsonTime( dcd.noDarkness[i] ? -1D : dcd.dark[i].a );
+    append( ",\"darkEnd\":" );
+    jsonTime( dcd.noDarkness[i] ? -1D : dcd.dark[i].b );
+
+    append( ",\"events\":[" );
+    int first = m_len;
+    int ev = events( dcd, i );
+    if ( 0 != ( ev & LUNAR_EVENT ) )
+      jsonEvent( LUNAR_NAME[ev & QUAD_MASK], lunarTime( dcd, i ) );
+    if ( 0 != ( ev & SOLAR_EVENT ) ) {
+      if ( m_len > first )
+        append( ',' );
+      jsonEvent( SOLAR_NAME[( ev >> SOLAR_SHIFT ) & QUAD_MASK], solarTime( dcd, i ) );
+    }
+    int dst = dstChange( dcd, dcd.jdStart + i );
+    if ( DST_NONE != dst ) {
+      if ( m_len > first )
+        append( ',' );
+      jsonEvent( DST_NAME[dst], Astro.INVALID );
+    }
+    append( ']' );
+
+    double t[] = times( dcd, i );
+    for ( int j = 0; j < t.length; j++ ) {
+      append( ",\"" );
+      append( JSON_TIMES[j] );
+      append( "\":" );
+      jsonTime( t[j] );
+    }
+    append( '}' );
+  }
+
+  // moon rise/set, sunset, twilight end, next twilight start & sunrise
+  private double[] times( DarkCalData dcd, int i ) {
+    m_times[0] = dcd.moonRS[i].a;
+    m_times[1] = dcd.moonRS[i].b;
+    m_times[2] = dcd.sunRS[i].b;
+    m_times[3] = dcd.astTwi[i].b;
+    m_times[4] = dcd.astTwi[i+1].a;
+    m_times[5] = dcd.sunRS[i+1].a;
+    return m_times;
+  }
+
+  //-------------------------------------------------------------------------
+  // lunar and solar quarter changes during day i, as
+  //   LUNAR_EVENT | quadrant | SOLAR_EVENT | quadrant << SOLAR_SHIFT
+  // (0 if none). The quadrants are those at the start of the day.
+  //
+  // The events are found by a quadrant change over the day. (See
+  // AstroOps.quadrant(); if lunar minus solar longitude changes
+  // quadrant, there was a lunar phase; if the solar longitude does,
+  // a solstice or equinox.) With event times, lunarTime() and
+  // solarTime() then find the instant, bracketed by the same
+  // longitudes.
+  //
+  private int events( DarkCalData dcd, int i ) {
+    if ( null == m_pd || dcd.dci != m_dci ) {
+      m_pd = new PlanetData();
+      m_dci = dcd.dci;
+      m_loc = new ObsInfo( new Latitude(m_dci.lat), new Longitude(m_dci.lon), m_dci.tz );
+      m_endJd = Double.NaN;
+    }
+
+    double jd = dcd.jd[i];
+    if ( jd == m_endJd ) {     // yesterday's end is today's start
+      m_solarLon[0] = m_solarLon[1];
+      m_lunarLon[0] = m_lunarLon[1];
+    }
+    else {
+      m_solarLon[0] = m_pd.calcLon( Planets.EARTH, jd, m_loc );
+      m_lunarLon[0] = m_pd.calcLon( Planets.LUNA, jd, m_loc );
+    }
+    m_endJd = jd + 1D;
+    m_solarLon[1] = m_pd.calcLon( Planets.EARTH, m_endJd, m_loc );
+    m_lunarLon[1] = m_pd.calcLon( Planets.LUNA, m_endJd, m_loc );
+
+    int ev = 0;
+    int quad0 = AstroOps.quadrant( m_lunarLon[0] - m_solarLon[0] );
+    if ( quad0 != AstroOps.quadrant( m_lunarLon[1] - m_solarLon[1] ) )
+      ev |= LUNAR_EVENT | quad0;
+    quad0 = AstroOps.quadrant( m_solarLon[0] );
+    if ( quad0 != AstroOps.quadrant( m_solarLon[1] ) )
+      ev |= SOLAR_EVENT | ( quad0 << SOLAR_SHIFT );
+    return ev;
+  }
+
+  // instant of day i's lunar phase or solstice/equinox, as a fraction
+  // of the day; -1 if not wanted (or not found). Called after
+  // events( dcd, i ), whose day-end longitudes bracket the search.
+  private double lunarTime( DarkCalData dcd, int i ) {
+    if ( !m_eventTimes )
+      return Astro.INVALID;
+    return LunarCalc.quarterChange( dcd.jd[i], m_lunarLon[0] - m_solarLon[0],
+        m_lunarLon[1] - m_solarLon[1], LunarCalc.QUARTER_TOLERANCE );
+  }
+
+  private double solarTime( DarkCalData dcd, int i ) {
+    if ( !m_eventTimes )
+      return Astro.INVALID;
+    return SolarCalc.seasonChange( dcd.jd[i], m_solarLon[0], m_solarLon[1],
+                                   SolarCalc.SEASON_TOLERANCE );
+  }
+
+  // DST_START or DST_END if Daylight time starts or ends on a day
+  private static int dstChange( DarkCalData dcd, long day ) {
+    int change = dcd.zone.daylightChange( day );
+    return ( change > 0 ) ? DST_START : ( ( change < 0 ) ? DST_END : DST_NONE );
+  }
+
+  // the integer time zone, or the zone id (JSON)
+  private static String timeZone( DarkCalData dcd ) {
+    return ( null == dcd.dci.zone ) ? String.valueOf( dcd.dci.tz )
+                                    : "\"" + dcd.zone.getName() + "\"";
+  }
+
+  //-------------------------------------------------------------------------
+  // cells
+  //
+  private void nextColumn( int sp, boolean empty ) {
+    if ( TAB_DELIMITED == m_format )
+      append( '\t' );
+    else if ( HTML == m_format )
+      append( empty ? "&nbsp;</TD>\n  <TD>" : "</TD>\n  <TD>" );
+    else {
+      while ( sp-- > 0 )
+        append( ' ' );
+    }
+  }
+
+  private void timeColumn( double t ) {
+    time( t );
+    nextColumn( 2, false );
+  }
+
+  // day of the month, or 'Su' on Sundays
+  private void day( long day ) {
+    if ( 6 == day % 7 )
+      append( "Su" );
+    else
+      twoDigits( PackedDates.day( DateOps.dayToPacked( day ) ) );
+  }
+
+  // ISO date
+  private void date( long day ) {
+    int date = DateOps.dayToPacked( day );
+    int y = PackedDates.year( date );
+    twoDigits( y / 100 );
+    twoDigits( y % 100 );
+    append( '-' );
+    twoDigits( PackedDates.month( date ) );
+    append( '-' );
+    twoDigits( PackedDates.day( date ) );
+  }
+
+  // hh:mm, rounded up to the minute; a time < 0 is '--:--' in text,
+  // and empty in CSV
+  private void time( double t ) {
+    if ( t < 0D ) {
+      if ( CSV != m_format && JSON != m_format )
+        append( "--:--" );
+      return;
+    }
+    int minutes = (int)
+        (t * Astro.HOURS_PER_DAY * Astro.MINUTES_PER_HOUR + Astro.ROUND_UP);
+    twoDigits( minutes / Astro.IMINUTES_PER_HOUR );
+    append( ':' );
+    twoDigits( minutes % Astro.IMINUTES_PER_HOUR );
+  }
+
+  private void jsonTime( double t ) {
+    if ( t < 0D )
+      append( "null" );
+    else {
+      append( '"' );
+      time( t );
+      append( '"' );
+    }
+  }
+
+  // "hh:mm " after a text event, returning the width used
+  private int textEventTime( double t ) {
+    if ( t < 0D )
+      return 0;
+    time( t );
+    append( ' ' );
+    return 6;
+  }
+
+  // "@hh:mm" after a CSV or JSON event
+  private void eventTime( double t ) {
+    if ( t >= 0D ) {
+      append( '@' );
+      time( t );
+    }
+  }
+
+  private void jsonEvent( String s, double t ) {
+    append( '"' );
+    append( s );
+    eventTime( t );
+    append( '"' );
+  }
+
+  private void twoDigits( int i ) {
+    append( (char)( '0' + i / 10 ) );
+    append( (char)( '0' + i % 10 ) );
+  }
+
+  private void append( char c ) {
+    if ( m_len == m_buf.length )
+      grow();
+    m_buf[m_len++] = c;
+  }
+
+  private void append( String s ) {
+    int n = s.length();
+    while ( m_len + n > m_buf.length )
+      grow();
+    s.getChars( 0, n, m_buf, m_len );
+    m_len += n;
+  }
+
+  private void grow() {
+    char buf[] = new char[2 * m_buf.length];
+    System.arraycopy( m_buf, 0, buf, 0, m_len );
+    m_buf = buf;
+  }
+
+  private static final int DST_NONE = 0, DST_START = 1, DST_END = 2;
+
+  private static final int EVENT_WIDTH = 10;
+  private static final int QUAD_MASK = 3, SOLAR_SHIFT = 2;
+  private static final int LUNAR_EVENT = 0x10, SOLAR_EVENT = 0x20;
+
+  private static final String LUNAR_TEXT[] = { "1Q ", "FM ", "3Q ", "NM " };
+  private static final String SOLAR_TEXT[] =
+      { "SumSol ", "Aut Eq  ", "WinSol ", "Ver Eq " };
+  private static final String LUNAR_NAME[] = { "1Q", "FM", "3Q", "NM" };
+  private static final String SOLAR_NAME[] = { "SumSol", "AutEq", "WinSol", "VerEq" };
+  private static final String DST_NAME[] = { "", "DST", "ST" };
+  private static final String JSON_TIMES[] =
+      { "moonRise", "moonSet", "sunset", "astTwiEnd", "astTwiStart", "sunrise" };
+
+  private static final String LINE_SEPARATOR = System.getProperty( "line.separator" );
+
+  private final Writer m_out;
+  private final int m_format;
+  private boolean m_eventTimes;
+  private char m_buf[] = new char[256];   // the row being formatted
+  private int m_len;
+  private int m_rows;                     // rows written since begin()
+
+  private final double m_times[] = new double[6];
+
+  // quarter checks for the data last written
+  private PlanetData m_pd;
+  private ObsInfo m_loc;
+  private DarkCalInput m_dci;
+  private double m_endJd;
+  private final double m_solarLon[] = new double[2], m_lunarLon[] = new double[2];
+}
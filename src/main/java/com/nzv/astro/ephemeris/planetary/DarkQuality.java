@@ -0,0 +1,256 @@
+/*****************************************************************************\
+ * DarkQuality
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * Darkness quality through the night: the limiting magnitude at the
+ * zenith (<TT>VisLimit</TT>), with the Moon's light weighted by its
+ * phase and altitude, rather than any Moon above the horizon spoiling
+ * the night as in <TT>DarkCal</TT>.
+ * <P>
+ * The night, from local mean noon to the next, is sampled every
+ * <TT>getStep()</TT> minutes. The Sun's and Moon's positions are
+ * computed every half day for the whole range of nights and
+ * interpolated (as <TT>RiseSetSeries</TT> does), and the site and
+ * date parameters of <TT>VisLimit</TT> are set once per night, so a
+ * sample only updates the Sun and Moon (<TT>setBodyParams()</TT>) and
+ * computes the V band. A year of nights takes a fraction of a second.
+ * <P>
+ * Nights are numbered by the date they start on. An instance is not
+ * thread safe; use one per thread.
+ */
+public class DarkQuality {
+
+ /**
+  * Default sky quality threshold: limiting magnitude at the zenith
+  */
+  public static final double DEFAULT_THRESHOLD = 6D;
+
+ /**
+  * Default sampling step, minutes
+  */
+  public static final int DEFAULT_STEP = 10;
+
+ /**
+  * Default temperature, degrees C
+  */
+  public static final double DEFAULT_TEMPERATURE = 10D;
+
+ /**
+  * Default relative humidity, percent
+  */
+  public static final double DEFAULT_HUMIDITY = 40D;
+
+ /**
+  * Constructor, for a site at sea level with the default temperature
+  * and humidity.
+  *
+  * @param oi The observer's location
+  */
+  public DarkQuality( ObsInfo oi ) {
+    this( oi, 0D, DEFAULT_TEMPERATURE, DEFAULT_HUMIDITY );
+  }
+
+ /**
+  * Constructor.
+  *
+  * @param oi The observer's location
+  * @param height Height above sea level, in meters
+  * @param temperature Temperature, in degrees C
+  * @param humidity Relative humidity, in percent
+  */
+  public DarkQuality( ObsInfo oi, double height, double temperature,
+                      double humidity )
+  {
+    m_lat = oi.getLatitudeRad();
+    m_lon = oi.getLongitudeRad();
+    m_noon = AstroOps.localMeanNoon( oi.getLongitudeDeg() );
+
+    m_fbd.htAboveSeaInMeters = height;
+    m_fbd.latitude = m_lat;
+    m_fbd.temperatureInC = temperature;
+    m_fbd.relativeHumidity = humidity;
+    m_vl.setMask( VisLimit.BAND_2 );      // the limiting magnitude's (V)
+  }
+
+ /**
+  * Set the sky quality threshold.
+  *
+  * @param mag Limiting magnitude at the zenith
+  */
+  public void setThreshold( double mag ) { m_threshold = mag; }
+
+ /**
+  * Get the sky quality threshold (limiting magnitude at the zenith).
+  */
+  public double getThreshold() { return m_threshold; }
+
+ /**
+  * Set the sampling step.
+  *
+  * @param minutes Minutes between samples
+  */
+  public void setStep( int minutes ) { m_step = minutes; }
+
+ /**
+  * Get the sampling step, in minutes.
+  */
+  public int getStep() { return m_step; }
+
+ /**
+  * Calculate the limiting magnitude through a night.
+  *
+  * @param day The night's date (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  *
+  * @return The limiting magnitude at the zenith every
+  *     <TT>getStep()</TT> minutes from local mean noon, or
+  *     <TT>Double.NaN</TT> while the Sun is up
+  */
+  public double[] timeline( long day ) {
+    double out[] = new double[samples()];
+    positions( day, 1 );
+    night( 0, out );
+    return out;
+  }
+
+ /**
+  * Calculate the minutes of a night when the sky is at least as dark
+  * as the threshold.
+  *
+  * @param day The night's date (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  *
+  * @return The minutes (a multiple of the step)
+  */
+  public int minutes( long day ) {
+    return minutes( day, day + 1 )[0];
+  }
+
+ /**
+  * Calculate the minutes of each night of a range when the sky is at
+  * least as dark as the threshold.
+  *
+  * @param jdStart First night (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  * @param jdEnd Day after the last night
+  *
+  * @return The minutes for each night (a multiple of the step)
+  */
+  public int[] minutes( long jdStart, long jdEnd ) {
+    int nights = (int)( jdEnd - jdStart );
+    int out[] = new int[Math.max( nights, 0 )];
+    positions( jdStart, nights );
+    for ( int n = 0; n < nights; n++ )
+      out[n] = night( n, null );
+    return out;
+  }
+
+  //-------------------------------------------------------------------------
+  private int samples() {
+    return Astro.IHOURS_PER_DAY * Astro.IMINUTES_PER_HOUR / m_step;
+  }
+
+  // the Sun's and Moon's positions over a range of nights
+  private void positions( long jdStart, int nights ) {
+    m_jdStart = jdStart;
+    m_sun = new NightEpochs( Planets.EARTH, jdStart, nights );
+    m_moon = new NightEpochs( Planets.LUNA, jdStart, nights );
+  }
+
+  // sample night n of the positions; the limiting magnitudes go to
+  // out[] (if not null), and the dark minutes are returned
+  private int night( int n, double out[] ) {
+    // the date's site parameters
+    int date = DateOps.dayToPacked( m_jdStart + n );
+    m_fbd.year = PackedDates.year( date );
+    m_fbd.month = PackedDates.month( date );
+    m_vl.setBrightnessParams( m_fbd );
+    m_vl.computeSkyBrightness( m_abd );
+    m_vl.computeExtinction();
+
+    // night n starts at noon into UT day n + k0
+    int k0 = NightEpochs.noonDay( m_noon );
+    double noon = m_noon - k0;
+
+    int minutes = 0;
+    int day = -1;
+    RiseSet.Interpolated sun = null, moon = null;
+    double step = m_step / ( Astro.HOURS_PER_DAY * Astro.MINUTES_PER_HOUR );
+    for ( int s = 0, samples = samples(); s < samples; s++ ) {
+      double t = noon + s * step;
+      int k = n + k0 + (int)t;
+      double m = t - (int)t;
+      if ( k != day ) {
+        day = k;
+        sun = m_sun.day( k, m_lon, m_lat );
+        moon = m_moon.day( k, m_lon, m_lat );
+      }
+
+      double sunAlt = sun.altitude( m );
+      if ( sunAlt > RiseSet.SUN_ALT ) {
+        if ( null != out )
+          out[s] = Double.NaN;
+        continue;
+      }
+      // the Moon as seen from the site, lowered by its parallax
+      double moonAlt = moon.altitude( m );
+      moonAlt -= RiseSet.MOON_PARALLAX * Math.cos( moonAlt );
+
+      double sunDec = sun.declination( m ), moonDec = moon.declination( m );
+      double elong = Math.acos( Math.sin( sunDec ) * Math.sin( moonDec ) +
+          Math.cos( sunDec ) * Math.cos( moonDec ) *
+          Math.cos( sun.rightAscension( m ) - moon.rightAscension( m ) ) );
+
+      // VisLimit's lunar magnitude takes the phase angle (0 at full
+      // Moon), roughly 180 degrees less the elongation
+      m_abd.distMoon = Astro.PI_OVER_TWO - moonAlt;
+      m_abd.distSun = Astro.PI_OVER_TWO - sunAlt;
+      m_vl.setBodyParams( m_abd.distMoon, m_abd.distSun, Math.PI - elong );
+      m_vl.computeSkyBrightness( m_abd );
+      double mag = m_vl.limitingMagnitude();
+
+      if ( null != out )
+        out[s] = mag;
+      if ( mag >= m_threshold )
+        minutes += m_step;
+    }
+    return minutes;
+  }
+
+  //-------------------------------------------------------------------------
+  /** (for unit testing only) */
+  public static void main( String args[] ) {
+    if ( args.length < 4 ) {
+      System.err.println(
+          "usage: DarkQuality <month> <year> <latitude> <longitude> [threshold]\n" );
+      return;
+    }
+    int month = Integer.parseInt( args[0] );
+    int year = Integer.parseInt( args[1] );
+    ObsInfo oi = new ObsInfo( new Latitude( Double.parseDouble( args[2] ) ),
+                              new Longitude( Double.parseDouble( args[3] ) ) );
+    DarkQuality dq = new DarkQuality( oi );
+    if ( args.length > 4 )
+      dq.setThreshold( Double.parseDouble( args[4] ) );
+
+    long jdStart = DateOps.dmyToDay( 1, month, year );
+    int minutes[] = dq.minutes( jdStart,
+        DateOps.dmyToDay( 1, month % 12 + 1, year + month / 12 ) );
+    for ( int n = 0; n < minutes.length; n++ )
+      System.out.println( ( n + 1 ) + ": " + minutes[n] + " minutes" );
+  }
+
+  //-------------------------------------------------------------------------
+  private final double m_lat, m_lon;    // radians
+  private final double m_noon;          // local mean noon, days after 0h UT (0..1)
+  private double m_threshold = DEFAULT_THRESHOLD;
+  private int m_step = DEFAULT_STEP;
+
+  private final VisLimit m_vl = new VisLimit();
+  private final VisLimitFixedBrightnessData m_fbd = new VisLimitFixedBrightnessData();
+  private final VisLimitAngularBrightnessData m_abd = new VisLimitAngularBrightnessData();
+
+  // positions of the last range of nights
+  private long m_jdStart;
+  private NightEpochs m_sun, m_moon;
+}
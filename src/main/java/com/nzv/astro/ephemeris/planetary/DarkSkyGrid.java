@@ -0,0 +1,305 @@
+/*****************************************************************************\
+ * DarkSkyGrid
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Hours of darkness (astronomical darkness with the Moon down, as in
+ * <TT>DarkCal</TT>) over a latitude/longitude grid, per night or
+ * summed over a range of nights, for "dark sky availability" maps.
+ * <P>
+ * As in <TT>RiseSetGrid</TT>, the Sun's and Moon's positions are
+ * geocentric, so they are computed once for the whole grid (every
+ * half day over the range) and each cell only solves the
+ * interpolated positions for its own horizon. The dark time of a day
+ * is then measured between the twilight and moon rise/set times. The
+ * cells are split by rows across a fork-join pool.
+ * <P>
+ * A night runs from local mean noon to the next (by longitude, not
+ * time zone), and is numbered by the date it starts on. Results are
+ * in hours, in one flat array: <TT>[night][latitude][longitude]</TT>
+ * for <TT>nightly()</TT>, so that each night is a contiguous
+ * <TT>latitude * longitude</TT> matrix, and <TT>[latitude][longitude]</TT>
+ * for <TT>total()</TT>.
+ */
+public class DarkSkyGrid {
+
+ /**
+  * Constructor.
+  *
+  * @param lat Grid latitudes (rows), in degrees
+  * @param lon Grid longitudes (columns), in degrees (east positive)
+  */
+  public DarkSkyGrid( double lat[], double lon[] ) {
+    m_lat = new double[lat.length];
+    m_lon = new double[lon.length];
+    m_noon = new double[lon.length];
+    for ( int i = 0; i < lat.length; i++ )
+      m_lat[i] = Math.toRadians( lat[i] );
+    for ( int j = 0; j < lon.length; j++ ) {
+      m_lon[j] = Math.toRadians( lon[j] );
+      m_noon[j] = AstroOps.localMeanNoon( lon[j] );
+    }
+  }
+
+ /**
+  * Get the number of grid rows (latitudes).
+  */
+  public int rows() { return m_lat.length; }
+
+ /**
+  * Get the number of grid columns (longitudes).
+  */
+  public int columns() { return m_lon.length; }
+
+ /**
+  * Calculate the hours of darkness for every night and grid cell, on
+  * a shared pool.
+  *
+  * @param jdStart First night (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  * @param jdEnd Day after the last night
+  *
+  * @return The hours, as <TT>[night][latitude][longitude]</TT>
+  */
+  public double[] nightly( long jdStart, long jdEnd ) {
+    return nightly( jdStart, jdEnd, Pool.POOL );
+  }
+
+ /**
+  * Calculate the hours of darkness for every night and grid cell.
+  *
+  * @param jdStart First night (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  * @param jdEnd Day after the last night
+  * @param pool The pool to run on
+  *
+  * @return The hours, as <TT>[night][latitude][longitude]</TT>
+  */
+  public double[] nightly( long jdStart, long jdEnd, ForkJoinPool pool ) {
+    int nights = (int)( jdEnd - jdStart );
+    double out[] = new double[nights * m_lat.length * m_lon.length];
+    calc( jdStart, nights, out, m_lat.length * m_lon.length, pool );
+    return out;
+  }
+
+ /**
+  * Calculate the total hours of darkness over a range of nights for
+  * every grid cell, on a shared pool.
+  *
+  * @param jdStart First night (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  * @param jdEnd Day after the last night
+  *
+  * @return The hours, as <TT>[latitude][longitude]</TT>
+  */
+  public double[] total( long jdStart, long jdEnd ) {
+    return total( jdStart, jdEnd, Pool.POOL );
+  }
+
+ /**
+  * Calculate the total hours of darkness over a range of nights for
+  * every grid cell.
+  *
+  * @param jdStart First night (a Julian day number, see <TT>DateOps.dmyToDay()</TT>)
+  * @param jdEnd Day after the last night
+  * @param pool The pool to run on
+  *
+  * @return The hours, as <TT>[latitude][longitude]</TT>
+  */
+  public double[] total( long jdStart, long jdEnd, ForkJoinPool pool ) {
+    double out[] = new double[m_lat.length * m_lon.length];
+    calc( jdStart, (int)( jdEnd - jdStart ), out, 0, pool );
+    return out;
+  }
+
+ /**
+  * Calculate the total hours of darkness over the nights of a month
+  * for every grid cell, on a shared pool.
+  *
+  * @param month Month (1 - 12)
+  * @param year Year
+  *
+  * @return The hours, as <TT>[latitude][longitude]</TT>
+  */
+  public double[] month( int month, int year ) {
+    return total( DateOps.dmyToDay( 1, month, year ),
+                  DateOps.dmyToDay( 1, month % 12 + 1, year + month / 12 ) );
+  }
+
+  //-------------------------------------------------------------------------
+  // nightStride is the distance between nights in out[], or 0 to sum
+  // them
+  //
+  private void calc( long jdStart, int nights, double out[], int nightStride,
+                     ForkJoinPool pool )
+  {
+    if ( nights <= 0 )
+      return;
+
+    NightEpochs sun = new NightEpochs( Planets.EARTH, jdStart, nights );
+    NightEpochs moon = new NightEpochs( Planets.LUNA, jdStart, nights );
+    pool.invoke( new Rows( sun, moon, nights, out, nightStride, 0, m_lat.length ) );
+  }
+
+  //-------------------------------------------------------------------------
+  // a range of grid rows
+  //
+  private class Rows extends RecursiveAction {
+    private final NightEpochs m_sun, m_moon;
+    private final int m_nights;
+    private final double m_out[];
+    private final int m_nightStride;
+    private final int m_from, m_to;
+
+    Rows( NightEpochs sun, NightEpochs moon, int nights, double out[], int nightStride,
+          int from, int to )
+    {
+      m_sun = sun;
+      m_moon = moon;
+      m_nights = nights;
+      m_out = out;
+      m_nightStride = nightStride;
+      m_from = from;
+      m_to = to;
+    }
+
+    protected void compute() {
+      if ( m_to - m_from > 1 &&
+           ( m_to - m_from ) * m_lon.length * m_nights > MIN_CELL_NIGHTS ) {
+        int mid = ( m_from + m_to ) >>> 1;
+        invokeAll( new Rows( m_sun, m_moon, m_nights, m_out, m_nightStride, m_from, mid ),
+                   new Rows( m_sun, m_moon, m_nights, m_out, m_nightStride, mid, m_to ) );
+        return;
+      }
+
+      double cuts[] = new double[MAX_CUTS];
+      double split[] = new double[2];
+      for ( int i = m_from; i < m_to; i++ ) {
+        for ( int j = 0; j < m_lon.length; j++ ) {
+          int cell = i * m_lon.length + j;
+
+          // night n is the end of UT day n + k0 and the start of the next
+          double noon = m_noon[j];
+          int k0 = NightEpochs.noonDay( noon );
+          noon -= k0;
+
+          double prevTail = 0D;
+          for ( int k = k0; k <= m_nights + k0; k++ ) {
+            dark( m_sun.day( k, m_lon[j], m_lat[i] ),
+                  m_moon.day( k, m_lon[j], m_lat[i] ), noon, cuts, split );
+            if ( k > k0 ) {
+              double hours = ( prevTail + split[0] ) * Astro.HOURS_PER_DAY;
+              if ( 0 == m_nightStride )
+                m_out[cell] += hours;
+              else
+                m_out[( k - k0 - 1 ) * m_nightStride + cell] = hours;
+            }
+            prevTail = split[1];
+          }
+        }
+      }
+    }
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  //-------------------------------------------------------------------------
+  // dark time of a day before (split[0]) and after (split[1]) a time of
+  // the day: the day is cut at each twilight and moon rise/set, and
+  // each piece is dark or not as its middle is
+  //
+  private static void dark( RiseSet.Interpolated sun, RiseSet.Interpolated moon,
+                            double noon, double cuts[], double split[] )
+  {
+    int n = 0;
+    cuts[n++] = 0D;
+    cuts[n++] = noon;
+    cuts[n++] = 1D;
+    n = sun.findAll( RiseSet.RISING, SUN_ALT, cuts, n );
+    n = sun.findAll( RiseSet.SETTING, SUN_ALT, cuts, n );
+    n = moon.findAll( RiseSet.RISING, MOON_ALT, cuts, n );
+    n = moon.findAll( RiseSet.SETTING, MOON_ALT, cuts, n );
+    Arrays.sort( cuts, 0, n );
+
+    split[0] = split[1] = 0D;
+    for ( int c = 1; c < n; c++ ) {
+      double a = cuts[c-1], b = cuts[c];
+      if ( b <= a )
+        continue;
+      double m = .5 * ( a + b );
+      if ( sun.altitude( m ) < SUN_ALT && moon.altitude( m ) < MOON_ALT )
+        split[( b <= noon ) ? 0 : 1] += b - a;
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // dark hours of a night by stepping through it a minute at a time,
+  // with the Sun's and Moon's altitudes calculated at every step
+  //
+  private static double scan( double lat, double lon, long day ) {
+    ObsInfo oi = new ObsInfo( new Latitude( lat ), new Longitude( lon ) );
+    PlanetData pd = new PlanetData();
+    double start = day - .5 + AstroOps.localMeanNoon( lon );
+    int minutes = Astro.IHOURS_PER_DAY * Astro.IMINUTES_PER_HOUR;
+    int dark = 0;
+    try {
+      for ( int m = 0; m < minutes; m++ ) {
+        double jd = start + ( m + .5 ) / minutes;
+        pd.calc( Planets.EARTH, jd, oi );
+        if ( pd.getAltAzLat() >= SUN_ALT )
+          continue;
+        pd.calc( Planets.LUNA, jd, oi );
+        if ( pd.getAltAzLat() < MOON_ALT )
+          dark++;
+      }
+    }
+    catch ( NoInitException ni ) {}
+    return (double)dark / Astro.IMINUTES_PER_HOUR;
+  }
+
+  /** (for unit testing only) */
+  public static void main( String args[] ) {
+    // date line cells (both sides of it, and on it), then polar spring
+    double cells[][] = {
+      { 40D, 179.9 }, { 40D, 180D }, { 40D, -180D }, { 40D, 10D },
+      { 66D, 10D }, { 69.6, 10D }
+    };
+    long first[] = {
+      DateOps.dmyToDay( 1, 1, 2024 ), DateOps.dmyToDay( 1, 1, 2024 ),
+      DateOps.dmyToDay( 1, 1, 2024 ), DateOps.dmyToDay( 1, 1, 2024 ),
+      DateOps.dmyToDay( 31, 3, 2024 ), DateOps.dmyToDay( 15, 9, 2024 )
+    };
+    final int nights = 7;
+    for ( int c = 0; c < cells.length; c++ ) {
+      DarkSkyGrid grid = new DarkSkyGrid( new double[] { cells[c][0] },
+                                          new double[] { cells[c][1] } );
+      double hours[] = grid.nightly( first[c], first[c] + nights );
+      double worst = 0D;
+      for ( int n = 0; n < nights; n++ )
+        worst = Math.max( worst,
+            Math.abs( hours[n] - scan( cells[c][0], cells[c][1], first[c] + n ) ) );
+      System.out.println( "lat " + cells[c][0] + ", lon " + cells[c][1] +
+                          ": worst difference " + worst + " h" );
+    }
+  }
+
+  // default pool, created on first use
+  private static class Pool {
+    static final ForkJoinPool POOL = new ForkJoinPool();
+  }
+
+  // smallest piece of work worth splitting
+  private static final int MIN_CELL_NIGHTS = 4096;
+
+  // the day's ends and noon, plus every rise and set of each body
+  private static final int MAX_CUTS = 3 + 4 * RiseSet.Interpolated.FROM_TRANSITS;
+
+  private static final double SUN_ALT = RiseSet.riseSetAltitude( RiseSet.ASTRONOMICAL_TWI );
+  private static final double MOON_ALT = RiseSet.riseSetAltitude( RiseSet.MOON );
+
+  private final double m_lat[], m_lon[];
+  private final double m_noon[];       // local mean noon, days after 0h UT (0..1)
+}
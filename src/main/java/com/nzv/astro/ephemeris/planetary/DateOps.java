@@ -303,6 +303,40 @@ public class DateOps {
 
   //--------------------------------------------------------------------------
 
+ /**
+  * Converts a Julian day in <TT>long</TT> form to a GREGORIAN date
+  * packed in an <TT>int</TT> (see <TT>PackedDates</TT>), without
+  * allocating anything. Years <TT>PackedDates.DEFAULT_FIRST_YEAR</TT>
+  * to <TT>DEFAULT_LAST_YEAR</TT> are table lookups.
+  *
+  * @param jd Julian day to convert
+  *
+  * @return The packed date
+  */
+  public static int dayToPacked( long jd ) {
+    return Table.TABLE.dayToPacked( jd );
+  }
+
+ /**
+  * Converts a packed GREGORIAN date (see <TT>PackedDates</TT>) to a
+  * Julian day in <TT>long</TT> form.
+  *
+  * @param packed The packed date
+  *
+  * @return The corresponding Julian day number
+  */
+  public static long packedToDay( int packed ) {
+    return Table.TABLE.packedToDay( packed );
+  }
+
+  // default packed date table, created on first use
+  private static class Table {
+    static final PackedDates TABLE = new PackedDates(
+        PackedDates.DEFAULT_FIRST_YEAR, PackedDates.DEFAULT_LAST_YEAR );
+  }
+
+  //--------------------------------------------------------------------------
+
  /**
   * Convert a Java <TT>Calendar</TT> to Julian day value in
   * <TT>long</TT> form.
@@ -441,6 +475,8 @@ public class DateOps {
     if( julian )
       dcd.yearEndDays -= 2;
 
+    // dcd may have been used for a leap year already (see dayToDmy())
+    dcd.monthDays[1] = DateConversionData.sMonthDays[1];
     if( 0 == (dcd.year % 4)) {
       if( 0 !=(dcd.year % 100) || 0 == (dcd.year % 400) || julian ) {
         dcd.monthDays[1] = 29;
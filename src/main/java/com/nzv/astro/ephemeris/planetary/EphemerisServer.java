@@ -0,0 +1,512 @@
+/*****************************************************************************\
+ * EphemerisServer
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.time.DateTimeException;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP service for <TT>DarkCal</TT> months, rise/set times,
+ * planet positions and lunar summaries, on the JDK's built-in HTTP
+ * server, so callers don't need to start a JVM per request.
+ * <P>
+ * Endpoints (GET, with query parameters; latitudes and longitudes in
+ * degrees, north and east positive; <TT>tz</TT> is a fixed offset in
+ * hours, or a zone id such as Europe/Paris, see <TT>ZoneOffsets</TT>;
+ * with <TT>usdst=true</TT> it is instead an integer time zone (-12 to
+ * 12) with U.S. Daylight time, as <TT>DarkCal</TT> has always used):
+ * <PRE>
+ *   /darkcal?month=7&amp;year=2011&amp;lat=40&amp;lon=-75.8&amp;tz=America/New_York[&amp;dst=false][&amp;format=html]
+ *       format: html (default), text, tab, csv or json
+ *   /riseset?body=sun&amp;date=2011-07-01&amp;lat=40&amp;lon=-75.8&amp;tz=-5&amp;usdst=true
+ *       body: sun, moon, civil, nautical, astronomical (twilight),
+ *       or a planet (mercury ... pluto); times are local hh:mm
+ *   /position?body=mars&amp;date=2011-07-01[&amp;hour=21.5]&amp;lat=40&amp;lon=-75.8
+ *       hour is UT; angles in degrees, azimuth from north through east,
+ *       geocentric distance in AU
+ *   /lunar?lat=40&amp;lon=-75.8
+ *       LunarCalc.summary() for now
+ * </PRE>
+ * Responses are kept in memory for a while (a few minutes, one for
+ * <TT>/lunar</TT>) and carry an ETag, so a repeated request is either
+ * answered from memory or with 304 Not Modified. Identical requests
+ * arriving together are calculated once: the others wait for the
+ * first one's result.
+ */
+public class EphemerisServer {
+
+ /**
+  * Default port
+  */
+  public static final int DEFAULT_PORT = 8080;
+
+ /**
+  * Default number of request threads
+  */
+  public static final int DEFAULT_THREADS = 16;
+
+ /**
+  * Default time responses are kept, in milliseconds
+  */
+  public static final long DEFAULT_TTL = 10L * 60 * 1000;
+
+ /**
+  * Most responses kept
+  */
+  public static final int MAX_ENTRIES = 4096;
+
+ /**
+  * Constructor.
+  *
+  * @param port The port to listen on
+  * @param threads Number of request threads
+  * @param ttl Time responses are kept, in milliseconds
+  *
+  * @throws IOException if the port can't be opened
+  */
+  public EphemerisServer( int port, int threads, long ttl ) throws IOException {
+    m_ttl = ttl;
+    m_server = HttpServer.create( new InetSocketAddress( port ), 0 );
+    m_executor = Executors.newFixedThreadPool( threads );
+    m_server.setExecutor( m_executor );
+
+    m_server.createContext( "/darkcal", new Endpoint( m_ttl ) {
+      Response calc( Map<String,String> q ) { return darkCal( q ); }
+    } );
+    m_server.createContext( "/riseset", new Endpoint( m_ttl ) {
+      Response calc( Map<String,String> q ) { return riseSet( q ); }
+    } );
+    m_server.createContext( "/position", new Endpoint( m_ttl ) {
+      Response calc( Map<String,String> q ) { return position( q ); }
+    } );
+    m_server.createContext( "/lunar", new Endpoint( Math.min( m_ttl, LUNAR_TTL ) ) {
+      Response calc( Map<String,String> q ) { return lunar( q ); }
+    } );
+  }
+
+ /**
+  * Start answering requests.
+  */
+  public void start() {
+    m_server.start();
+  }
+
+ /**
+  * Stop answering requests.
+  *
+  * @param delay Most seconds to wait for requests in progress
+  */
+  public void stop( int delay ) {
+    m_server.stop( delay );
+    m_executor.shutdown();
+  }
+
+ /**
+  * Get the address the server listens on.
+  */
+  public InetSocketAddress getAddress() { return m_server.getAddress(); }
+
+  //-------------------------------------------------------------------------
+  // endpoints
+  //
+  private static Response darkCal( Map<String,String> q ) {
+    DarkCalInput dci = new DarkCalInput( intParam( q, "month" ), intParam( q, "year" ),
+        doubleParam( q, "lon" ), doubleParam( q, "lat" ), 0 );
+    if ( dci.month < 1 || dci.month > 12 || dci.year <= 0 )
+      throw new IllegalArgumentException( "month or year out of range" );
+    param( q, "tz", null );      // required here
+    if ( usDst( q ) )
+      dci.tz = usTimeZone( q );
+    else
+      dci.zone = zone( q ).getName();
+
+    String format = param( q, "format", "html" );
+    StringWriter sw = new StringWriter();
+    DarkCal dc = new DarkCal( new PrintWriter( sw ), "html".equals( format ) );
+    dc.g_ignoreDst = !Boolean.valueOf( param( q, "dst", "true" ) ).booleanValue();
+    String type;
+    if ( "html".equals( format ) )
+      type = "text/html";
+    else if ( "text".equals( format ) )
+      type = "text/plain";
+    else if ( "tab".equals( format ) ) {
+      dc.g_tabDelimited = true;
+      type = "text/tab-separated-values";
+    }
+    else if ( "csv".equals( format ) ) {
+      dc.g_csv = true;
+      type = "text/csv";
+    }
+    else if ( "json".equals( format ) ) {
+      dc.g_json = true;
+      type = "application/json";
+    }
+    else
+      throw new IllegalArgumentException( "unknown format: " + format );
+
+    dc.printData( new DarkCalCalc( dci, dc.g_ignoreDst ).dcd );
+    return new Response( sw.toString(), type );
+  }
+
+  private static Response riseSet( Map<String,String> q ) {
+    ObsInfo oi = obsInfo( q );
+    // local midnight
+    long day = day( q );
+    double jd = day - .5 - zone( q ).offset( day ) * Astro.DAYS_PER_HOUR;
+    String body = param( q, "body", null );
+    StringBuffer sb = new StringBuffer( "{\"body\":\"" ).append( body ).append( '"' );
+
+    int rsType = indexOf( RISE_SET_TYPES, body );
+    if ( rsType >= 0 ) {
+      TimePair tp = RiseSet.getTimes( rsType, jd, oi, new PlanetData() );
+      jsonTime( sb.append( ",\"rise\":" ), tp.a );
+      jsonTime( sb.append( ",\"set\":" ), tp.b );
+    }
+    else {
+      RiseSetEvents rse = RiseSet.getEvents( planet( body ), jd, oi, new PlanetData() );
+      jsonTime( sb.append( ",\"rise\":" ), rse.rise );
+      jsonTime( sb.append( ",\"set\":" ), rse.set );
+      jsonTime( sb.append( ",\"transit\":" ), rse.transit );
+      sb.append( ",\"status\":\"" ).append( STATUS[rse.status] ).append( '"' );
+    }
+    return new Response( sb.append( "}\n" ).toString(), "application/json" );
+  }
+
+  private static Response position( Map<String,String> q ) {
+    ObsInfo oi = obsInfo( q );
+    double jd = day( q ) - .5 + doubleParam( q, "hour", 0D ) * Astro.DAYS_PER_HOUR;
+    String body = param( q, "body", null );
+    PlanetData pd = new PlanetData( planet( body ), jd, oi );
+    try {
+      StringBuffer sb = new StringBuffer( "{\"body\":\"" ).append( body ).append( '"' );
+      sb.append( ",\"jd\":" ).append( jd );
+      jsonAngle( sb.append( ",\"ra\":" ), pd.getRightAscension() );
+      jsonAngle( sb.append( ",\"dec\":" ), pd.getDeclination() );
+      jsonAngle( sb.append( ",\"alt\":" ), pd.getAltAzLat() );
+      jsonAngle( sb.append( ",\"az\":" ),
+                 AstroOps.normalizeRadians( Math.PI - pd.getAltAzLon() ) );
+      sb.append( ",\"distance\":" ).append( pd.getEclipticRadius() );
+      return new Response( sb.append( "}\n" ).toString(), "application/json" );
+    }
+    catch ( NoInitException nie ) {
+      throw new IllegalStateException( nie.toString() );
+    }
+  }
+
+  private static Response lunar( Map<String,String> q ) {
+    return new Response( LunarCalc.summary( obsInfo( q ) ) + "\n", "text/plain" );
+  }
+
+  //-------------------------------------------------------------------------
+  // parameters
+  //
+  private static String param( Map<String,String> q, String name, String def ) {
+    String v = q.get( name );
+    if ( null != v )
+      return v;
+    if ( null == def )
+      throw new IllegalArgumentException( "missing parameter: " + name );
+    return def;
+  }
+
+  private static int intParam( Map<String,String> q, String name ) {
+    return Integer.parseInt( param( q, name, null ) );
+  }
+
+  private static double doubleParam( Map<String,String> q, String name ) {
+    return Double.parseDouble( param( q, name, null ) );
+  }
+
+  private static double doubleParam( Map<String,String> q, String name, double def ) {
+    String v = q.get( name );
+    return ( null == v ) ? def : Double.parseDouble( v );
+  }
+
+  private static ObsInfo obsInfo( Map<String,String> q ) {
+    return new ObsInfo( new Latitude( doubleParam( q, "lat" ) ),
+                        new Longitude( doubleParam( q, "lon" ) ) );
+  }
+
+  // tz (and usdst), as ZoneOffsets
+  private static ZoneOffsets zone( Map<String,String> q ) {
+    if ( usDst( q ) )
+      return ZoneOffsets.us( usTimeZone( q ) );
+    String tz = param( q, "tz", "0" );
+    try {
+      return ZoneOffsets.of( tz );
+    }
+    catch ( DateTimeException dte ) {
+      throw new IllegalArgumentException( "unknown time zone: " + tz );
+    }
+  }
+
+  // usdst=true: tz is an integer time zone with U.S. Daylight time
+  private static boolean usDst( Map<String,String> q ) {
+    return Boolean.valueOf( param( q, "usdst", "false" ) ).booleanValue();
+  }
+
+  // tz as an integer time zone (see DarkCalInput.tz)
+  private static int usTimeZone( Map<String,String> q ) {
+    int tz = Integer.parseInt( param( q, "tz", "0" ) );
+    if ( tz < -12 || tz > 12 )
+      throw new IllegalArgumentException( "time zone out of range: " + tz );
+    return tz;
+  }
+
+  // date=yyyy-mm-dd, as a day number
+  private static long day( Map<String,String> q ) {
+    String f[] = param( q, "date", null ).split( "-" );
+    if ( 3 != f.length )
+      throw new IllegalArgumentException( "date must be yyyy-mm-dd" );
+    int year = Integer.parseInt( f[0] );
+    int month = Integer.parseInt( f[1] );
+    int dom = Integer.parseInt( f[2] );
+    // a day past the end of its month would roll into the next one
+    if ( month < 1 || month > 12 || dom < 1 || dom > 31 )
+      throw new IllegalArgumentException( "no such date: " + param( q, "date", null ) );
+    int packed = PackedDates.pack( dom, month, year );
+    long day = DateOps.packedToDay( packed );
+    if ( DateOps.dayToPacked( day ) != packed )
+      throw new IllegalArgumentException( "no such date: " + param( q, "date", null ) );
+    return day;
+  }
+
+  private static int planet( String name ) {
+    int p = indexOf( PLANETS, name );
+    if ( p < 0 || Planets.EARTH == p )
+      throw new IllegalArgumentException( "unknown body: " + name );
+    return p;
+  }
+
+  private static int indexOf( String names[], String name ) {
+    for ( int i = 0; i < names.length; i++ )
+      if ( names[i].equals( name ) )
+        return i;
+    return -1;
+  }
+
+  private static void jsonTime( StringBuffer sb, double t ) {
+    if ( t < 0D )
+      sb.append( "null" );
+    else
+      sb.append( '"' ).append( TimeOps.formatTime( t ) ).append( '"' );
+  }
+
+  private static void jsonAngle( StringBuffer sb, double rad ) {
+    sb.append( Math.round( Math.toDegrees( rad ) * 1e6 ) / 1e6 );
+  }
+
+  static Map<String,String> parseQuery( String query ) {
+    Map<String,String> q = new TreeMap<String,String>();
+    if ( null == query )
+      return q;
+    try {
+      for ( String p : query.split( "&" ) ) {
+        int eq = p.indexOf( '=' );
+        if ( eq > 0 )
+          q.put( URLDecoder.decode( p.substring( 0, eq ), "UTF-8" ),
+                 URLDecoder.decode( p.substring( eq + 1 ), "UTF-8" ) );
+      }
+    }
+    catch ( UnsupportedEncodingException uee ) {
+      throw new IllegalStateException( uee.toString() );  // UTF-8 always exists
+    }
+    return q;
+  }
+
+  //-------------------------------------------------------------------------
+  // a calculated response
+  //
+  static class Response {
+    final byte body[];
+    final String type, etag;
+    long expires;
+
+    Response( String body, String type ) {
+      this.body = body.getBytes( UTF8 );
+      this.type = type + "; charset=UTF-8";
+      // FNV-1a
+      long h = 0xcbf29ce484222325L;
+      for ( byte b : this.body )
+        h = ( h ^ ( b & 0xff ) ) * 0x100000001b3L;
+      etag = "\"" + Long.toHexString( h ) + "\"";
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  // one endpoint: caching, coalescing and the HTTP exchange
+  //
+  private abstract class Endpoint implements HttpHandler {
+    private final long m_endpointTtl;
+
+    Endpoint( long ttl ) { m_endpointTtl = ttl; }
+
+    abstract Response calc( Map<String,String> q );
+
+    public void handle( HttpExchange ex ) throws IOException {
+      try {
+        if ( !"GET".equals( ex.getRequestMethod() ) ) {
+          send( ex, 405, "GET only\n" );
+          return;
+        }
+        final Map<String,String> q = parseQuery( ex.getRequestURI().getRawQuery() );
+        Response r;
+        try {
+          r = get( ex.getHttpContext().getPath() + q, new Callable<Response>() {
+            public Response call() { return calc( q ); }
+          } );
+        }
+        catch ( IllegalArgumentException iae ) {
+          send( ex, 400, iae.getMessage() + "\n" );
+          return;
+        }
+
+        ex.getResponseHeaders().set( "ETag", r.etag );
+        ex.getResponseHeaders().set( "Cache-Control", "max-age=" + m_endpointTtl / 1000 );
+        if ( r.etag.equals( ex.getRequestHeaders().getFirst( "If-None-Match" ) ) ) {
+          ex.sendResponseHeaders( 304, -1 );
+          return;
+        }
+        ex.getResponseHeaders().set( "Content-Type", r.type );
+        ex.sendResponseHeaders( 200, r.body.length );
+        ex.getResponseBody().write( r.body );
+      }
+      catch ( RuntimeException re ) {
+        send( ex, 500, re + "\n" );
+      }
+      finally {
+        ex.close();
+      }
+    }
+
+    // a cached response, or calculate it (once, however many ask)
+    private Response get( String key, Callable<Response> calc ) {
+      long now = System.currentTimeMillis();
+      Response r;
+      synchronized ( m_cache ) {
+        r = m_cache.get( key );
+      }
+      if ( null != r && r.expires > now )
+        return r;
+
+      FutureTask<Response> task = new FutureTask<Response>( calc );
+      FutureTask<Response> running = m_pending.putIfAbsent( key, task );
+      if ( null == running ) {
+        try {
+          task.run();
+          r = result( task );
+          r.expires = System.currentTimeMillis() + m_endpointTtl;
+          synchronized ( m_cache ) {
+            m_cache.put( key, r );
+          }
+          return r;
+        }
+        finally {
+          m_pending.remove( key, task );
+        }
+      }
+      return result( running );
+    }
+  }
+
+  private static Response result( FutureTask<Response> task ) {
+    try {
+      return task.get();
+    }
+    catch ( ExecutionException ee ) {
+      Throwable t = ee.getCause();
+      if ( t instanceof RuntimeException )
+        throw (RuntimeException)t;
+      throw new IllegalStateException( t );
+    }
+    catch ( InterruptedException ie ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( ie );
+    }
+  }
+
+  private static void send( HttpExchange ex, int status, String text ) throws IOException {
+    byte b[] = text.getBytes( UTF8 );
+    ex.getResponseHeaders().set( "Content-Type", "text/plain; charset=UTF-8" );
+    ex.sendResponseHeaders( status, b.length );
+    ex.getResponseBody().write( b );
+  }
+
+  //-------------------------------------------------------------------------
+  private static void usage( String pn ) {
+    System.err.println(
+        "usage: " + pn + " [port] [threads]\n" +
+        "       port defaults to " + DEFAULT_PORT +
+        ", threads to " + DEFAULT_THREADS );
+    System.exit(1);
+  }
+
+ /**
+  * The server entry point.
+  * <P><TT>
+  * usage: EphemerisServer [port] [threads]
+  * </TT>
+  */
+  public static void main( String args[] ) {
+    final String PROCNAME = "EphemerisServer";
+
+    if ( args.length > 2 )
+      usage( PROCNAME );
+    int port = DEFAULT_PORT, threads = DEFAULT_THREADS;
+    try {
+      if ( args.length > 0 )
+        port = Integer.parseInt( args[0] );
+      if ( args.length > 1 )
+        threads = Integer.parseInt( args[1] );
+    }
+    catch ( NumberFormatException nfe ) {
+      usage( PROCNAME );
+    }
+
+    try {
+      new EphemerisServer( port, threads, DEFAULT_TTL ).start();
+      System.err.println( PROCNAME + " listening on port " + port );
+    }
+    catch ( IOException ioe ) {
+      System.err.println( "Error: " + ioe.getMessage() );
+      System.exit(1);
+    }
+  }
+
+  private static final Charset UTF8 = Charset.forName( "UTF-8" );
+  private static final long LUNAR_TTL = 60L * 1000;
+
+  private static final String RISE_SET_TYPES[] =
+      { "sun", "moon", "civil", "nautical", "astronomical" };   // RiseSet types
+  private static final String PLANETS[] =
+      { "sun", "mercury", "venus", "earth", "mars", "jupiter", "saturn",
+        "uranus", "neptune", "pluto", "moon" };                  // Planets
+  private static final String STATUS[] =
+      { "rises_and_sets", "circumpolar", "never_rises" };       // RiseSetEvents
+
+  private final HttpServer m_server;
+  private final ExecutorService m_executor;
+  private final long m_ttl;
+
+  // responses by path and sorted query, least recently used first
+  private final Map<String,Response> m_cache =
+      new LinkedHashMap<String,Response>( 16, .75F, true ) {
+        protected boolean removeEldestEntry( Map.Entry<String,Response> e ) {
+          return size() > MAX_ENTRIES;
+        }
+        private static final long serialVersionUID = 1L;
+      };
+  private final ConcurrentMap<String,FutureTask<Response>> m_pending =
+      new ConcurrentHashMap<String,FutureTask<Response>>();
+}
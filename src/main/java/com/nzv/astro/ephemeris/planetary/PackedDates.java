@@ -0,0 +1,246 @@
+/*****************************************************************************\
+ * PackedDates
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.time.LocalDate;
+
+/**
+ * Fast conversions between Julian day numbers (as
+ * <TT>DateOps.dmyToDay()</TT> returns) and Gregorian dates packed in
+ * an <TT>int</TT>, for code that converts a date per output row.
+ * <P>
+ * A packed date is <TT>year &lt;&lt; 9 | month &lt;&lt; 5 | day</TT>,
+ * so packed dates sort as the dates do, and the fields are read back
+ * with shifts and masks (<TT>year()</TT>, <TT>month()</TT>,
+ * <TT>day()</TT>). Nothing is allocated.
+ * <P>
+ * An instance holds the Julian day of each New Years Day over a range
+ * of years, and a table of the month of each day of the year, so a
+ * conversion is a few array lookups. Dates outside the range are
+ * still converted, with the New Years Days calculated as
+ * <TT>DateOps</TT> does. Instances are immutable, and can be shared
+ * between threads; <TT>DateOps.dayToPacked()</TT> and
+ * <TT>DateOps.packedToDay()</TT> share one for years
+ * <TT>DEFAULT_FIRST_YEAR</TT> to <TT>DEFAULT_LAST_YEAR</TT>.
+ * <P>
+ * The calendar is the (proleptic) Gregorian one, as for
+ * <TT>java.time.LocalDate</TT>.
+ */
+public class PackedDates {
+
+ /**
+  * First year of the default table
+  */
+  public static final int DEFAULT_FIRST_YEAR = 1600;
+
+ /**
+  * Last year of the default table
+  */
+  public static final int DEFAULT_LAST_YEAR = 2399;
+
+ /**
+  * Constructor.
+  *
+  * @param firstYear First year of the table
+  * @param lastYear Last year of the table
+  */
+  public PackedDates( int firstYear, int lastYear ) {
+    m_firstYear = firstYear;
+    m_yearStart = new long[Math.max( lastYear - firstYear + 2, 1 )];
+    for ( int i = 0; i < m_yearStart.length; i++ )
+      m_yearStart[i] = yearStart( firstYear + i );
+  }
+
+ /**
+  * Get the first year of the table.
+  */
+  public int getFirstYear() { return m_firstYear; }
+
+ /**
+  * Get the last year of the table.
+  */
+  public int getLastYear() { return m_firstYear + m_yearStart.length - 2; }
+
+ /**
+  * Convert a Julian day number to a packed date.
+  *
+  * @param jd Julian day number
+  *
+  * @return The packed date
+  */
+  public int dayToPacked( long jd ) {
+    int i = (int)( ( jd - m_yearStart[0] ) * YEARS_PER_DAY );
+    int n = m_yearStart.length - 1;
+    if ( jd >= m_yearStart[0] && jd < m_yearStart[n] ) {
+      if ( i >= n )
+        i = n - 1;
+      if ( jd < m_yearStart[i] )
+        i--;
+      else if ( jd >= m_yearStart[i+1] )
+        i++;
+      long start = m_yearStart[i];
+      return packDayOfYear( m_firstYear + i, (int)( jd - start ),
+                            DAYS_IN_LEAP_YEAR == m_yearStart[i+1] - start );
+    }
+
+    // outside the table: estimate the year, then correct it
+    int y = m_firstYear + (int)Math.floor( ( jd - m_yearStart[0] ) * YEARS_PER_DAY );
+    long start = yearStart( y );
+    if ( jd < start )
+      start = yearStart( --y );
+    else if ( jd >= yearStart( y + 1 ) )
+      start = yearStart( ++y );
+    return packDayOfYear( y, (int)( jd - start ), isLeapYear( y ) );
+  }
+
+ /**
+  * Convert a packed date to a Julian day number.
+  *
+  * @param packed The packed date
+  *
+  * @return The Julian day number
+  */
+  public long packedToDay( int packed ) {
+    int y = year( packed );
+    int i = y - m_firstYear;
+    long start;
+    boolean leap;
+    if ( i >= 0 && i < m_yearStart.length - 1 ) {
+      start = m_yearStart[i];
+      leap = ( DAYS_IN_LEAP_YEAR == m_yearStart[i+1] - start );
+    }
+    else {
+      start = yearStart( y );
+      leap = isLeapYear( y );
+    }
+    return start + MONTH_START[leap ? 1 : 0][month( packed ) - 1] + day( packed ) - 1;
+  }
+
+  //-------------------------------------------------------------------------
+ /**
+  * Pack a date.
+  *
+  * @param day Day of the month (1..31)
+  * @param month Month of the Year (1..12)
+  * @param year Year
+  *
+  * @return The packed date
+  */
+  public static int pack( int day, int month, int year ) {
+    return ( year << YEAR_SHIFT ) | ( month << MONTH_SHIFT ) | day;
+  }
+
+ /**
+  * Get the day of the month (1..31) of a packed date.
+  */
+  public static int day( int packed ) { return packed & DAY_MASK; }
+
+ /**
+  * Get the month (1..12) of a packed date.
+  */
+  public static int month( int packed ) { return ( packed >> MONTH_SHIFT ) & MONTH_MASK; }
+
+ /**
+  * Get the year of a packed date.
+  */
+  public static int year( int packed ) { return packed >> YEAR_SHIFT; }
+
+ /**
+  * Convert a packed date to a <TT>LocalDate</TT>.
+  *
+  * @param packed The packed date
+  */
+  public static LocalDate toLocalDate( int packed ) {
+    return LocalDate.of( year( packed ), month( packed ), day( packed ) );
+  }
+
+ /**
+  * Pack a <TT>LocalDate</TT>.
+  *
+  * @param date The date
+  *
+  * @return The packed date
+  */
+  public static int pack( LocalDate date ) {
+    return pack( date.getDayOfMonth(), date.getMonthValue(), date.getYear() );
+  }
+
+ /**
+  * Convert a Julian day number to a <TT>LocalDate</TT>.
+  *
+  * @param jd Julian day number
+  */
+  public static LocalDate dayToLocalDate( long jd ) {
+    return LocalDate.ofEpochDay( jd - EPOCH_DAY );
+  }
+
+ /**
+  * Convert a <TT>LocalDate</TT> to a Julian day number.
+  *
+  * @param date The date
+  *
+  * @return The Julian day number
+  */
+  public static long localDateToDay( LocalDate date ) {
+    return date.toEpochDay() + EPOCH_DAY;
+  }
+
+  //-------------------------------------------------------------------------
+  // Julian day number of New Years Day (as DateOps.getJulGregYearData())
+  //
+  static long yearStart( int y ) {
+    long days;
+    if ( y >= 0 )
+      days = y * 365L + y / 4 - y / 100 + y / 400;
+    else
+      days = y * 365L + ( y - 3 ) / 4 - ( y - 99 ) / 100 + ( y - 399 ) / 400;
+    if ( isLeapYear( y ) )
+      days--;
+    return days + E_JULIAN_GREGORIAN + 1;
+  }
+
+  static boolean isLeapYear( int y ) {
+    return 0 == y % 4 && ( 0 != y % 100 || 0 == y % 400 );
+  }
+
+  private static int packDayOfYear( int y, int doy, boolean leap ) {
+    int l = leap ? 1 : 0;
+    int m = MONTH_OF_DAY[l][doy];
+    return pack( doy - MONTH_START[l][m-1] + 1, m, y );
+  }
+
+  //-------------------------------------------------------------------------
+  private static final int YEAR_SHIFT = 9, MONTH_SHIFT = 5;
+  private static final int DAY_MASK = 31, MONTH_MASK = 15;
+
+  private static final long E_JULIAN_GREGORIAN = 1721060L;
+  private static final long EPOCH_DAY = 2440588L;      // 1970 January 1
+  private static final int DAYS_IN_LEAP_YEAR = 366;
+  private static final double YEARS_PER_DAY = 400D / 146097D;
+
+  // days in each month of a common year
+  private static final int MONTH_DAYS[] =
+      { 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31 };
+
+  // days before each month, for common and leap years
+  private static final int MONTH_START[][] = new int[2][13];
+
+  // month (1..12) of each day of the year, for common and leap years
+  private static final byte MONTH_OF_DAY[][] = new byte[2][DAYS_IN_LEAP_YEAR];
+
+  static {
+    for ( int l = 0; l < 2; l++ ) {
+      for ( int m = 0; m < 12; m++ ) {
+        int days = MONTH_DAYS[m] + ( ( 1 == m ) ? l : 0 );
+        MONTH_START[l][m+1] = MONTH_START[l][m] + days;
+        for ( int d = MONTH_START[l][m]; d < MONTH_START[l][m+1]; d++ )
+          MONTH_OF_DAY[l][d] = (byte)( m + 1 );
+      }
+    }
+  }
+
+  private final int m_firstYear;
+  private final long m_yearStart[];     // New Years Days, firstYear to lastYear + 1
+}
@@ -56,11 +56,20 @@ public class PlanetData {
     m_polarLEs = new LocationElements();
     // choose appropriate method, based on planet
     //
-    if( Planets.LUNA == planet ) {
+    if( Planets.LUNA == planet && m_lowPrecision ) {
+      LunarApprox.calcAllLEs( m_polarLEs, m_centuries );
+      m_polarLEs.setRadius(m_polarLEs.getRadius()/AU); // Convert from km to AU
+    }
+    else if( Planets.LUNA == planet ) {
       Lunar luna = new Lunar();
       try {
         luna.calcAllLEs( m_polarLEs, m_centuries );
         m_polarLEs.setRadius(m_polarLEs.getRadius()/AU); // Convert from km to AU
+        if ( m_calcRates ) {
+          m_polarRates = new LocationElements();
+          luna.getRates( m_polarRates );
+          m_polarRates.setRadius(m_polarRates.getRadius()/AU);
+        }
       } catch (NoInitException ni) {}
 
     }
@@ -73,7 +82,10 @@ public class PlanetData {
       //Pluto.calcAllLEs( m_polarLEs, m_centuries );
     }
     else {
-      Vsop.calcAllLEs( m_polarLEs, m_centuries, planet );
+      if ( Planets.EARTH == planet )
+        calcEarth( m_polarLEs );
+      else
+        Vsop.calcAllLEs( m_polarLEs, m_centuries, planet );
       if ( Planets.EARTH == planet ) {
        /*
         * What we _really_ want is the location of the sun as seen from
@@ -103,6 +115,55 @@ public class PlanetData {
   public void calc( int planet, double jd, double deltaT, ObsInfo oi ) {
 	  calc (planet, jd, deltaT, oi, true, true);
   }
+
+ /**
+  * Select the low precision models for subsequent calculations.
+  * <P>
+  * When set, the Moon is computed with the truncated series in
+  * <TT>LunarApprox</TT> (good to about 0.2 degrees) and its
+  * heliocentric position is not computed, so <TT>getPolar*()</TT>
+  * return the geocentric position. The Sun, and the Earth position
+  * used to make planets geocentric, come from the closed form in
+  * <TT>SolarApprox</TT> (good to about 0.01 degrees) instead of
+  * VSOP87. This is meant for coarse scans, such as the hourly
+  * sampling in <TT>RiseSet</TT>.
+  *
+  * @param lowPrecision <TT>true</TT> for the low precision models
+  */
+  public void setLowPrecision( boolean lowPrecision ) { m_lowPrecision = lowPrecision; }
+
+ /**
+  * Determine whether the low precision lunar model is selected.
+  */
+  public boolean isLowPrecision() { return m_lowPrecision; }
+
+ /**
+  * Select whether subsequent calculations of the Moon also compute
+  * the rates of change of its coordinates (for telescope tracking).
+  * <P>
+  * The rates come from the analytic derivatives of the lunar series
+  * (see <TT>Lunar.getRates()</TT>), propagated through the same frame
+  * rotations as the position, including the rotation of the Earth
+  * and, with topocentric correction, the motion of the observer. They
+  * cost a fraction of a second evaluation, and are not available for
+  * other bodies or in low precision mode.
+  *
+  * @param calcRates <TT>true</TT> to compute the rates
+  */
+  public void setCalcRates( boolean calcRates ) { m_calcRates = calcRates; }
+
+ /**
+  * Determine whether rates are computed for the Moon.
+  */
+  public boolean isCalcRates() { return m_calcRates; }
+
+  // heliocentric position of the Earth, from the selected model
+  private void calcEarth( LocationElements loc ) {
+    if ( m_lowPrecision )
+      SolarApprox.calcEarthLEs( loc, m_centuries );
+    else
+      Vsop.calcAllLEs( loc, m_centuries, Planets.EARTH );
+  }
   
   // assumes deltaT = 0.0 for low precision purpose. (=> error in hour angle, if JD = TDT)
   public void calc( int planet, double jd, ObsInfo oi ) {
@@ -131,7 +192,15 @@ public class PlanetData {
 	  
 	  double localSiderealTime =
 		  AstroOps.greenwichSiderealTime(jd-deltaT) + oi.getLongitudeRad(); // UTC required !
-	  double obliquity = AstroOps.meanObliquity( m_centuries );
+	  // of this date (m_centuries still holds the previous call's date)
+	  double obliquity = AstroOps.meanObliquity( AstroOps.toMillenia( jd ) );
+	  m_localSiderealTime = localSiderealTime;
+	  m_obliquity = obliquity;
+
+	  // velocity, when rates are wanted (Moon only)
+	  double rateVec[] = null;
+	  m_ratesComplete = false;
+	  m_polarRates = null;
 
 
 	  // Two pass iteration for light time correction (added by W. Strickling)
@@ -151,6 +220,10 @@ public class PlanetData {
 		  MathOps.polarToCartesian( tmpVec, m_polarLEs.getLongitude(),
 				  m_polarLEs.getLatitude(), 
 				  m_polarLEs.getRadius());
+		  if (m_polarRates != null) {
+			  rateVec = new double[MathOps.VECTOR_SIZE];
+			  polarRatesToCartesian( rateVec, m_polarLEs, m_polarRates );
+		  }
 		  
 		  // Modification by Strickling: 
 		  // conversion Heliozentric to geocentric position
@@ -158,11 +231,13 @@ public class PlanetData {
 		  // calculate earth's position and convert tmpVec to geocentric
 		  g_polarLEs = new LocationElements(); // for buffering earth's position
 //		  if ((planet >= Planets.MERCURY) && (planet <= Planets.LUNA) && (planet != Planets.EARTH))
-		  if (planet != Planets.EARTH && planet != Planets.SUN)
+		  // (not needed for a low precision Moon, see setLowPrecision())
+		  if (planet != Planets.EARTH && planet != Planets.SUN &&
+		      !(planet == Planets.LUNA && m_lowPrecision))
 		  {
 			  if (passNo ==1 || ! lightT_Corr) {  // Earth position does not change, calc only first time				  
 				  // Calculate heliocentric coordinates of the Earth (g_polarLEs)
-				  Vsop.calcAllLEs( g_polarLEs, m_centuries, Planets.EARTH );
+				  calcEarth( g_polarLEs );
 				  MathOps.polarToCartesian( tmpVec2,  g_polarLEs.getLongitude(),
 						  g_polarLEs.getLatitude(), 
 						  g_polarLEs.getRadius());
@@ -186,9 +261,10 @@ public class PlanetData {
 		  // Topocentric reduction in passNo 2
 		  if  (passNo == 2) { // only in second pass of for Moon and Sun
 			  if (topoc_Corr) TopocReductionEcl (tmpVec, localSiderealTime, oi.getLatitudeRad(), obliquity);
+			  if (topoc_Corr && rateVec != null) TopocRateReductionEcl (rateVec, localSiderealTime, oi.getLatitudeRad(), obliquity);
 
 			// MOON: Calculate heliocentric position of the moon, for physical ephemeris, magnitude etc
-			  if (planet == Planets.LUNA){				  
+			  if (planet == Planets.LUNA && !m_lowPrecision){
 				  tmpVec2 [0] += tmpVec [0];
 				  tmpVec2 [1] += tmpVec [1];
 				  tmpVec2 [2] += tmpVec [2];
@@ -218,6 +294,11 @@ public class PlanetData {
 	  MathOps.rotateVector( tmpVec, obliquity, 0 );
 	  //TopocReductionEqu (tmpVec, localSiderealTime, oi.getLatitudeRad());
 	  m_equatorialLEs = new LocationElements(tmpVec);  // Cartesian!!
+	  if (rateVec != null) {
+		  MathOps.rotateVector( rateVec, obliquity, 0 );
+		  m_rightAscensionRate = rateOfLongitude( tmpVec, rateVec );
+		  m_declinationRate = rateOfLatitude( tmpVec, rateVec );
+	  }
 
 	  // extract RA/Dec from equatorial coords of date
 	  //
@@ -231,6 +312,15 @@ public class PlanetData {
 	  // The following two rotations take us from a vector in
 	  // equatorial coords of date to an alt/az vector:
 	  //
+	  if (rateVec != null) {
+		  // the frame turns with sidereal time: add the derivative of the
+		  // rotation, d/dt R(-LST) v = -SIDEREAL_RATE * R(PI/2 - LST) (x, y, 0)
+		  double turnVec[] = { tmpVec[0], tmpVec[1], 0. };
+		  MathOps.rotateVector( turnVec, Astro.PI_OVER_TWO - localSiderealTime, 2 );
+		  MathOps.rotateVector( rateVec, -localSiderealTime, 2 );
+		  for (int i = 0; i < MathOps.VECTOR_SIZE; i++)
+			  rateVec[i] -= Astro.SIDEREAL_RATE * turnVec[i];
+	  }
 	  MathOps.rotateVector( tmpVec, -localSiderealTime, 2 );
 
 	  //Strickling Change Z To X and Y to -Y
@@ -238,6 +328,12 @@ public class PlanetData {
 
 	  MathOps.rotateVector( tmpVec, oi.getLatitudeRad() - Astro.PI_OVER_TWO, 1);
 	  m_altAzLEs = new LocationElements(tmpVec);  // Cartesian!!
+	  if (rateVec != null) {
+		  MathOps.rotateVector( rateVec, oi.getLatitudeRad() - Astro.PI_OVER_TWO, 1);
+		  m_altitudeRate = rateOfLatitude( tmpVec, rateVec );
+		  m_azimuthRate = rateOfLongitude( tmpVec, rateVec );
+		  m_ratesComplete = true;
+	  }
 
 	  m_initComplete=true;
   } //calc
@@ -281,6 +377,53 @@ public class PlanetData {
 	    cartVec [1] -= tmpVec2 [1];
 	    cartVec [2] -= tmpVec2 [2];
 	} //TopocReduction **************************************
+
+    /** Reduces cartesian ecliptical velocities from geocentric to topocentric
+     * (the observer moves east along its parallel at the sidereal rate)
+     * 
+     * @param rateVec ecliptical velocity, AU per day
+     * @param localSiderealTime in radians
+     * @param latRad Latitude in radians
+     */
+	protected static void TopocRateReductionEcl (double rateVec [],
+    		double localSiderealTime, double latRad, double obliquity) {
+		final double AE           = 149597870.691;  	// km
+		final double R_EARTH      = 6368;               // km mean Radius
+
+	    double tmpVec2[] = new double[MathOps.VECTOR_SIZE];
+	    MathOps.polarToCartesian (tmpVec2, localSiderealTime + Astro.PI_OVER_TWO, 0.,
+	    		Astro.SIDEREAL_RATE * Math.cos(latRad) * R_EARTH/AE);
+	    MathOps.rotateVector( tmpVec2, -obliquity, 0 );
+	    rateVec [0] -= tmpVec2 [0];
+	    rateVec [1] -= tmpVec2 [1];
+	    rateVec [2] -= tmpVec2 [2];
+	} //TopocRateReduction **************************************
+
+	// cartesian velocity of a point given in polar coordinates, from the
+	// rates of its polar coordinates
+	private static void polarRatesToCartesian (double v [],
+			LocationElements pos, LocationElements rates) {
+		double cosLon = Math.cos(pos.getLongitude()), sinLon = Math.sin(pos.getLongitude());
+		double cosLat = Math.cos(pos.getLatitude()), sinLat = Math.sin(pos.getLatitude());
+		double r = pos.getRadius();
+		double dLon = rates.getLongitude(), dLat = rates.getLatitude(), dR = rates.getRadius();
+
+		v [0] = dR * cosLat * cosLon - r * (sinLat * cosLon * dLat + cosLat * sinLon * dLon);
+		v [1] = dR * cosLat * sinLon - r * (sinLat * sinLon * dLat - cosLat * cosLon * dLon);
+		v [2] = dR * sinLat + r * cosLat * dLat;
+	}
+
+	// rate of atan2(y, x) for position p and velocity v
+	private static double rateOfLongitude (double p [], double v []) {
+		return (p[0] * v[1] - p[1] * v[0]) / (p[0] * p[0] + p[1] * p[1]);
+	}
+
+	// rate of atan2(z, sqrt(x^2 + y^2)) for position p and velocity v
+	private static double rateOfLatitude (double p [], double v []) {
+		double rho2 = p[0] * p[0] + p[1] * p[1];
+		double r2 = rho2 + p[2] * p[2];
+		return (v[2] * rho2 - p[2] * (p[0] * v[0] + p[1] * v[1])) / (r2 * Math.sqrt(rho2));
+	}
   
   
   
@@ -349,7 +492,7 @@ public class PlanetData {
     public double getSolarLat() throws NoInitException {
       if ( !m_initComplete )
         throw new NoInitException( NoInit );
-      if (g_polarLEs.getRadius() == -1) Vsop.calcAllLEs( g_polarLEs, m_centuries, Planets.EARTH );	
+      if (g_polarLEs.getRadius() == -1) calcEarth( g_polarLEs );	
       return -g_polarLEs.getLatitude();
     }
 
@@ -359,7 +502,7 @@ public class PlanetData {
     public double getSolarLon() throws NoInitException {
       if ( !m_initComplete )
         throw new NoInitException( NoInit );
-      if (g_polarLEs.getRadius() == -1) Vsop.calcAllLEs( g_polarLEs, m_centuries, Planets.EARTH );	
+      if (g_polarLEs.getRadius() == -1) calcEarth( g_polarLEs );	
       return g_polarLEs.getLongitude() +Math.PI;
     }
 
@@ -369,7 +512,7 @@ public class PlanetData {
     public double getSolarRadius() throws NoInitException {
       if ( !m_initComplete )
         throw new NoInitException( NoInit );
-      if (g_polarLEs.getRadius() == -1) Vsop.calcAllLEs( g_polarLEs, m_centuries, Planets.EARTH );	
+      if (g_polarLEs.getRadius() == -1) calcEarth( g_polarLEs );	
       return g_polarLEs.getRadius();
     }
 
@@ -466,6 +609,17 @@ public class PlanetData {
     		m_altAzLEs.getY()*m_altAzLEs.getY()));
   }
 
+ /**
+  * Get the apparent altitude: <TT>getAltAzLat()</TT> corrected for
+  * atmospheric refraction.
+  *
+  * @param refraction The refraction model (for instance
+  *     <TT>Refraction.STANDARD</TT>)
+  */
+  public double getApparentAltitude( Refraction refraction ) throws NoInitException {
+    return refraction.apparent( getAltAzLat() );
+  }
+
  /**
   * Get the Alt-Az longitude. Radians, south is 0 deg (Converted into polar coordinates)
   */
@@ -512,6 +666,72 @@ public class PlanetData {
     return m_declination;
   }
 
+ /**
+  * Get the rate of change of the right ascension, in radians per day.
+  * (See <TT>setCalcRates()</TT>.)
+  */
+  public double getRightAscensionRate() throws NoInitException {
+    if ( !m_ratesComplete )
+      throw new NoInitException( NoRates );
+
+    return m_rightAscensionRate;
+  }
+
+ /**
+  * Get the rate of change of the declination, in radians per day.
+  * (See <TT>setCalcRates()</TT>.)
+  */
+  public double getDeclinationRate() throws NoInitException {
+    if ( !m_ratesComplete )
+      throw new NoInitException( NoRates );
+
+    return m_declinationRate;
+  }
+
+ /**
+  * Get the rate of change of the altitude (<TT>getAltAzLat()</TT>),
+  * in radians per day. (See <TT>setCalcRates()</TT>.)
+  */
+  public double getAltitudeRate() throws NoInitException {
+    if ( !m_ratesComplete )
+      throw new NoInitException( NoRates );
+
+    return m_altitudeRate;
+  }
+
+ /**
+  * Get the rate of change of the azimuth (<TT>getAltAzLon()</TT>),
+  * in radians per day. (See <TT>setCalcRates()</TT>.)
+  */
+  public double getAzimuthRate() throws NoInitException {
+    if ( !m_ratesComplete )
+      throw new NoInitException( NoRates );
+
+    return m_azimuthRate;
+  }
+
+ /**
+  * Get the local sidereal time used by the last calculation, in
+  * radians.
+  */
+  public double getLocalSiderealTime() throws NoInitException {
+    if ( !m_initComplete )
+      throw new NoInitException( NoInit );
+
+    return m_localSiderealTime;
+  }
+
+ /**
+  * Get the obliquity of the ecliptic used by the last calculation,
+  * in radians.
+  */
+  public double getObliquity() throws NoInitException {
+    if ( !m_initComplete )
+      throw new NoInitException( NoInit );
+
+    return m_obliquity;
+  }
+
   // instance data
 
   protected boolean m_initComplete;
@@ -524,6 +744,20 @@ public class PlanetData {
   protected double m_rightAscension;
   protected double m_declination;
 
+  protected boolean m_lowPrecision;
+
+  protected double m_localSiderealTime;
+  protected double m_obliquity;
+
+  // rates (Moon only, radians per day)
+  protected boolean m_calcRates;
+  protected boolean m_ratesComplete;
+  protected double m_rightAscensionRate;
+  protected double m_declinationRate;
+  protected double m_altitudeRate;
+  protected double m_azimuthRate;
+  protected LocationElements m_polarRates;		// rates of the geocentric lunar polar coordinates, AU per day
+
   protected LocationElements g_polarLEs;		// Polar Coord-System Elemts of Earth  Variable inserted by Strickling
   protected LocationElements m_polarLEs;		// Polar Coord-System Heliocentric
   protected LocationElements m_eclipticLEs;	// Cartesian Coord-System
@@ -531,4 +765,6 @@ public class PlanetData {
   protected LocationElements m_altAzLEs;		// Cartesian Coord-System
 
   private final static String NoInit = "Call PlanetData.calc() first.";
+  private final static String NoRates =
+      "Call PlanetData.setCalcRates(true), then calc() for Planets.LUNA first.";
 }
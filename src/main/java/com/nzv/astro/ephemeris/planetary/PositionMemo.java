@@ -0,0 +1,78 @@
+/*****************************************************************************\
+ * PositionMemo
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Geocentric positions (right ascension and declination) remembered
+ * by body and instant, so that rise/set calculations for different
+ * sites whose days start at the same instants (sites in the same time
+ * zone, for instance) calculate each position only once.
+ * <P>
+ * <TT>RiseSetSeries</TT> positions are geocentric, so they depend
+ * only on the instant, and a remembered one is exactly the one that
+ * would be calculated. Only full precision positions are remembered.
+ * A memo is safe to share between threads; it is never trimmed, so it
+ * should be dropped with the run of calculations it serves.
+ *
+ * @see RiseSetSeries#setMemo(PositionMemo)
+ */
+public class PositionMemo {
+
+ /**
+  * Get the number of positions remembered.
+  */
+  public int size() { return m_positions.size(); }
+
+ /**
+  * Get the number of positions found in the memo (rather than
+  * calculated) so far.
+  */
+  public long hits() { return m_hits; }
+
+  //-------------------------------------------------------------------------
+  // RA/Dec of a body at jd into radec[], if remembered
+  boolean get( int planet, double jd, double radec[] ) {
+    double p[] = m_positions.get( new Key( planet, jd ) );
+    if ( null == p )
+      return false;
+    radec[0] = p[0];
+    radec[1] = p[1];
+    m_hits++;
+    return true;
+  }
+
+  void put( int planet, double jd, double ra, double dec ) {
+    m_positions.putIfAbsent( new Key( planet, jd ), new double[] { ra, dec } );
+  }
+
+  private static final class Key {
+    private final int m_planet;
+    private final long m_jd;
+
+    Key( int planet, double jd ) {
+      m_planet = planet;
+      m_jd = Double.doubleToLongBits( jd );
+    }
+
+    public boolean equals( Object o ) {
+      if ( !( o instanceof Key ) )
+        return false;
+      Key k = (Key)o;
+      return m_planet == k.m_planet && m_jd == k.m_jd;
+    }
+
+    public int hashCode() {
+      return 31 * m_planet + (int)( m_jd ^ ( m_jd >>> 32 ) );
+    }
+  }
+
+  private final ConcurrentHashMap<Key,double[]> m_positions =
+      new ConcurrentHashMap<Key,double[]>();
+
+  // a statistic only, so updates may be lost between threads
+  private volatile long m_hits;
+}
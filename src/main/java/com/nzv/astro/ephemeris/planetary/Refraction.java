@@ -0,0 +1,129 @@
+/*****************************************************************************\
+ * Refraction
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * Atmospheric refraction (Meeus, Astronomical Algorithms, chapter
+ * 16), for a given air pressure and temperature.
+ * <P>
+ * Saemundsson's formula (true to apparent altitude) and Bennett's
+ * (apparent to true) are tabulated once, every {@value #STEP_DEG}
+ * degrees from {@value #MIN_ALT_DEG} to 90 degrees, for standard
+ * conditions (1010 millibars, 10 degrees C). A lookup interpolates
+ * linearly in the table and scales the result for the pressure and
+ * temperature, so it takes no trigonometry; the interpolation error
+ * is below one arc second.
+ * <P>
+ * Below {@value #MIN_ALT_DEG} degrees the refraction is held at its
+ * value there: the formulae are meaningless for bodies well below
+ * the horizon, and the altitude stays continuous for event searches.
+ */
+public class Refraction {
+
+ /**
+  * Standard pressure, millibars
+  */
+  public static final double STANDARD_PRESSURE = 1010D;
+
+ /**
+  * Standard temperature, degrees C
+  */
+  public static final double STANDARD_TEMPERATURE = 10D;
+
+ /**
+  * Refraction for standard conditions
+  */
+  public static final Refraction STANDARD =
+      new Refraction( STANDARD_PRESSURE, STANDARD_TEMPERATURE );
+
+ /**
+  * Lowest tabulated altitude, degrees
+  */
+  public static final double MIN_ALT_DEG = -2D;
+
+ /**
+  * Table step, degrees
+  */
+  public static final double STEP_DEG = .05;
+
+ /**
+  * Constructor.
+  *
+  * @param pressure Air pressure, in millibars
+  * @param temperature Air temperature, in degrees C
+  */
+  public Refraction( double pressure, double temperature ) {
+    m_factor = ( pressure / STANDARD_PRESSURE ) *
+               ( ( 273D + STANDARD_TEMPERATURE ) / ( 273D + temperature ) );
+  }
+
+ /**
+  * Get the refraction for a true (geometric) altitude.
+  *
+  * @param alt True altitude, in radians
+  *
+  * @return The refraction, in radians
+  */
+  public double refraction( double alt ) {
+    return m_factor * lookup( SAEMUNDSSON, alt );
+  }
+
+ /**
+  * Get the apparent altitude for a true (geometric) altitude, such as
+  * <TT>PlanetData.getAltAzLat()</TT>.
+  *
+  * @param alt True altitude, in radians
+  *
+  * @return The apparent altitude, in radians
+  */
+  public double apparent( double alt ) {
+    return alt + m_factor * lookup( SAEMUNDSSON, alt );
+  }
+
+ /**
+  * Get the true (geometric) altitude for an apparent one.
+  *
+  * @param alt Apparent altitude, in radians
+  *
+  * @return The true altitude, in radians
+  */
+  public double trueAltitude( double alt ) {
+    return alt - m_factor * lookup( BENNETT, alt );
+  }
+
+  //-------------------------------------------------------------------------
+  private static double lookup( double table[], double alt ) {
+    double x = ( alt - MIN_ALT ) * PER_RADIAN;
+    if ( x <= 0D )
+      return table[0];
+    int i = (int)x;
+    if ( i >= table.length - 1 )
+      return table[table.length-1];
+    return table[i] + ( x - i ) * ( table[i+1] - table[i] );
+  }
+
+  private static final double MIN_ALT = Math.toRadians( MIN_ALT_DEG );
+  private static final double PER_RADIAN = 1D / Math.toRadians( STEP_DEG );
+
+  // refraction in radians for standard conditions, by true (Saemundsson)
+  // or apparent (Bennett) altitude
+  private static final double SAEMUNDSSON[], BENNETT[];
+
+  static {
+    int n = (int)Math.round( ( 90D - MIN_ALT_DEG ) / STEP_DEG ) + 1;
+    SAEMUNDSSON = new double[n];
+    BENNETT = new double[n];
+    for ( int i = 0; i < n; i++ ) {
+      double h = MIN_ALT_DEG + i * STEP_DEG;
+      // both in arc minutes, zero at the zenith
+      double rs = 1.02 / Math.tan( Math.toRadians( h + 10.3 / ( h + 5.11 ) ) ) + .0019279;
+      double rb = 1D / Math.tan( Math.toRadians( h + 7.31 / ( h + 4.4 ) ) );
+      SAEMUNDSSON[i] = Math.toRadians( Math.max( 0D, rs ) / Astro.MINUTES_PER_DEGREE );
+      BENNETT[i] = Math.toRadians( Math.max( 0D, rb ) / Astro.MINUTES_PER_DEGREE );
+    }
+  }
+
+  private final double m_factor;    // pressure and temperature correction
+}
@@ -0,0 +1,193 @@
+/*****************************************************************************\
+ * RiseSetCache
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, thread safe, least recently used cache in front of
+ * <TT>RiseSet.getTimes()</TT>.
+ * <P>
+ * Entries are keyed by calculation type, Julian day and observer
+ * location, with the latitude and longitude rounded to a fixed
+ * resolution (0.01 degrees is about a kilometer, and moves rise and
+ * set times by a few seconds at most). Misses are computed for the
+ * rounded location, so a cached result only depends on its key.
+ * <P>
+ * The cache is split into segments by key, each an access ordered
+ * <TT>LinkedHashMap</TT> behind its own lock, so concurrent callers
+ * rarely wait on each other; eviction is least recently used within
+ * a segment. The calculation itself runs outside the lock: two
+ * threads missing on the same key at once both compute it.
+ */
+public class RiseSetCache {
+
+ /**
+  * Default location resolution, in degrees
+  */
+  public static final double DEFAULT_RESOLUTION = .01;
+
+ /**
+  * Constructor, with the default resolution.
+  *
+  * @param maxEntries Maximum number of cached results
+  */
+  public RiseSetCache( int maxEntries ) {
+    this( maxEntries, DEFAULT_RESOLUTION );
+  }
+
+ /**
+  * Constructor.
+  *
+  * @param maxEntries Maximum number of cached results
+  * @param resolution Location resolution, in degrees
+  */
+  public RiseSetCache( int maxEntries, double resolution ) {
+    m_resolution = resolution;
+    // never more than maxEntries (unless it is below SEGMENTS)
+    int perSegment = Math.max( 1, maxEntries / SEGMENTS );
+    m_segments = new Segment[SEGMENTS];
+    for ( int i = 0; i < SEGMENTS; i++ )
+      m_segments[i] = new Segment( perSegment );
+  }
+
+ /**
+  * Get the rise/set (or start/end) times, from the cache if possible.
+  *
+  * @param rsType Rise/Set type (SUN, MOON, CIVIL_TWI, NAUTICAL_TWI, or ASTRONOMICAL_TWI).
+  * @param jd The Julian day for which to calculate the desired information (set to 0h local time
+  * @param oi The observer's location
+  *
+  * @return the TimePair result, local time (a copy the caller may
+  *     modify)
+  */
+  public TimePair getTimes( int rsType, double jd, ObsInfo oi ) {
+    Key key = new Key( rsType, jd, quantize( oi.getLatitudeDeg() ),
+                       quantize( oi.getLongitudeDeg() ) );
+    int h = key.hashCode();
+    Segment segment = m_segments[( h ^ ( h >>> 16 ) ) & ( SEGMENTS - 1 )];
+
+    TimePair tp;
+    synchronized ( segment ) {
+      tp = segment.get( key );
+    }
+    if ( null != tp ) {
+      m_hits.incrementAndGet();
+      return new TimePair( tp );
+    }
+
+    m_misses.incrementAndGet();
+    ObsInfo rounded = new ObsInfo( new Latitude( key.lat * m_resolution ),
+                                   new Longitude( key.lon * m_resolution ),
+                                   oi.getTimeZone() );
+    tp = RiseSet.getTimes( rsType, jd, rounded, new PlanetData() );
+    synchronized ( segment ) {
+      segment.put( key, tp );
+    }
+    return new TimePair( tp );
+  }
+
+ /**
+  * Get the number of lookups answered from the cache.
+  */
+  public long getHits() { return m_hits.get(); }
+
+ /**
+  * Get the number of lookups that had to be calculated.
+  */
+  public long getMisses() { return m_misses.get(); }
+
+ /**
+  * Get the number of entries evicted to make room for new ones.
+  */
+  public long getEvictions() { return m_evictions.get(); }
+
+ /**
+  * Get the number of cached results.
+  */
+  public int size() {
+    int size = 0;
+    for ( Segment segment : m_segments ) {
+      synchronized ( segment ) {
+        size += segment.size();
+      }
+    }
+    return size;
+  }
+
+ /**
+  * Remove all cached results (the statistics are kept).
+  */
+  public void clear() {
+    for ( Segment segment : m_segments ) {
+      synchronized ( segment ) {
+        segment.clear();
+      }
+    }
+  }
+
+  //-------------------------------------------------------------------------
+  private long quantize( double deg ) {
+    return Math.round( deg / m_resolution );
+  }
+
+  private static final class Key {
+    final int rsType;
+    final double jd;
+    final long lat, lon;     // in units of the resolution
+
+    Key( int rsType, double jd, long lat, long lon ) {
+      this.rsType = rsType;
+      this.jd = jd;
+      this.lat = lat;
+      this.lon = lon;
+    }
+
+    public boolean equals( Object o ) {
+      if ( !( o instanceof Key ) )
+        return false;
+      Key k = (Key)o;
+      return rsType == k.rsType && lat == k.lat && lon == k.lon &&
+             Double.doubleToLongBits( jd ) == Double.doubleToLongBits( k.jd );
+    }
+
+    public int hashCode() {
+      long h = Double.doubleToLongBits( jd );
+      h = 31 * h + lat;
+      h = 31 * h + lon;
+      h = 31 * h + rsType;
+      return (int)( h ^ ( h >>> 32 ) );
+    }
+  }
+
+  // one LRU segment; callers hold its lock
+  private final class Segment extends LinkedHashMap<Key, TimePair> {
+    private final int m_max;
+
+    Segment( int max ) {
+      super( 16, .75f, true );
+      m_max = max;
+    }
+
+    protected boolean removeEldestEntry( Map.Entry<Key, TimePair> eldest ) {
+      if ( size() <= m_max )
+        return false;
+      m_evictions.incrementAndGet();
+      return true;
+    }
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  private static final int SEGMENTS = 16;     // a power of two
+
+  private final double m_resolution;
+  private final Segment m_segments[];
+  private final AtomicLong m_hits = new AtomicLong();
+  private final AtomicLong m_misses = new AtomicLong();
+  private final AtomicLong m_evictions = new AtomicLong();
+}
@@ -0,0 +1,74 @@
+/*****************************************************************************\
+ * RiseSetEvents
+\*****************************************************************************/
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * One body's events for one day: rise, upper transit, lower transit
+ * and set, and whether it crosses the horizon at all.
+ * <P>
+ * Times are fractions of the day (local time), or
+ * <TT>Astro.INVALID</TT> when the event does not occur. A body can
+ * transit without rising or setting (it stays above, or below, the
+ * horizon all day); the Moon can also skip a rise or a set while
+ * the others still occur.
+ *
+ * @see RiseSet#getEvents(int, double, ObsInfo, PlanetData)
+ * @see RiseSet#getEvents(double, double, double, ObsInfo)
+ */
+public class RiseSetEvents {
+ /**
+  * Status (pseudo-enum): the body crosses the rise/set altitude
+  * during the day
+  */
+  public static final int RISES_AND_SETS = 0;
+
+ /**
+  * Status (pseudo-enum): the body stays above the rise/set altitude
+  * all day
+  */
+  public static final int CIRCUMPOLAR = 1;
+
+ /**
+  * Status (pseudo-enum): the body stays below the rise/set altitude
+  * all day
+  */
+  public static final int NEVER_RISES = 2;
+
+ /**
+  * Rise time
+  */
+  public double rise = Astro.INVALID;
+
+ /**
+  * Set time
+  */
+  public double set = Astro.INVALID;
+
+ /**
+  * Upper transit (culmination) time
+  */
+  public double transit = Astro.INVALID;
+
+ /**
+  * Altitude at upper transit, in radians (<TT>Double.NaN</TT> when
+  * there is no transit during the day)
+  */
+  public double transitAltitude = Double.NaN;
+
+ /**
+  * Lower transit time
+  */
+  public double lowerTransit = Astro.INVALID;
+
+ /**
+  * Altitude at lower transit, in radians (<TT>Double.NaN</TT> when
+  * there is no lower transit during the day)
+  */
+  public double lowerTransitAltitude = Double.NaN;
+
+ /**
+  * RISES_AND_SETS, CIRCUMPOLAR or NEVER_RISES
+  */
+  public int status = RISES_AND_SETS;
+}
@@ -0,0 +1,131 @@
+/*****************************************************************************\
+ * RiseSetGrid
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rise/set (or twilight start/end) times over a latitude/longitude
+ * grid, for maps.
+ * <P>
+ * <TT>PlanetData</TT> positions are geocentric, so the body's right
+ * ascension and declination are the same for every grid cell. They
+ * are computed three times for the whole grid (start, middle and end
+ * of the day), and each cell then only solves the interpolated
+ * positions for its own horizon, as
+ * <TT>RiseSet.getTimesInterpolated()</TT> does. The cells are split
+ * by rows across a fork-join pool.
+ * <P>
+ * All cells share the same day, starting at <TT>jd</TT> (typically 0h
+ * UT), and the times are fractions of that day, or
+ * <TT>Astro.INVALID</TT> when the event does not occur during it.
+ */
+public class RiseSetGrid {
+
+ /**
+  * Constructor.
+  *
+  * @param lat Grid latitudes (rows), in degrees
+  * @param lon Grid longitudes (columns), in degrees (east positive)
+  */
+  public RiseSetGrid( double lat[], double lon[] ) {
+    m_lat = new double[lat.length];
+    m_lon = new double[lon.length];
+    for ( int i = 0; i < lat.length; i++ )
+      m_lat[i] = Math.toRadians( lat[i] );
+    for ( int j = 0; j < lon.length; j++ )
+      m_lon[j] = Math.toRadians( lon[j] );
+  }
+
+ /**
+  * Calculate the rise/set (or start/end) times for every grid cell,
+  * on a shared pool.
+  *
+  * @param rsType Rise/Set type (SUN, MOON, CIVIL_TWI, NAUTICAL_TWI, or ASTRONOMICAL_TWI).
+  * @param jd Start of the day
+  * @param rise Where the rise (or start) times go, as
+  *     <TT>rise[latitude][longitude]</TT>
+  * @param set Where the set (or end) times go, as
+  *     <TT>set[latitude][longitude]</TT>
+  */
+  public void calc( int rsType, double jd, double rise[][], double set[][] ) {
+    calc( rsType, jd, rise, set, Pool.POOL );
+  }
+
+ /**
+  * Calculate the rise/set (or start/end) times for every grid cell.
+  *
+  * @param rsType Rise/Set type (SUN, MOON, CIVIL_TWI, NAUTICAL_TWI, or ASTRONOMICAL_TWI).
+  * @param jd Start of the day
+  * @param rise Where the rise (or start) times go, as
+  *     <TT>rise[latitude][longitude]</TT>
+  * @param set Where the set (or end) times go, as
+  *     <TT>set[latitude][longitude]</TT>
+  * @param pool The pool to run on
+  */
+  public void calc( int rsType, double jd, double rise[][], double set[][],
+                    ForkJoinPool pool )
+  {
+    double ra[] = new double[3], dec[] = new double[3];
+    RiseSetSeries.positions( new PlanetData(), RiseSet.body( rsType ), jd,
+                             new ObsInfo(), ra, dec, 0 );
+    pool.invoke( new Rows( ra, dec, AstroOps.greenwichSiderealTime( jd ),
+                           RiseSet.riseSetAltitude( rsType ), rise, set,
+                           0, m_lat.length ) );
+  }
+
+  //-------------------------------------------------------------------------
+  // a range of grid rows
+  //
+  private class Rows extends RecursiveAction {
+    private final double m_ra[], m_dec[];
+    private final double m_gst0, m_h0;
+    private final double m_rise[][], m_set[][];
+    private final int m_from, m_to;
+
+    Rows( double ra[], double dec[], double gst0, double h0,
+          double rise[][], double set[][], int from, int to )
+    {
+      m_ra = ra;
+      m_dec = dec;
+      m_gst0 = gst0;
+      m_h0 = h0;
+      m_rise = rise;
+      m_set = set;
+      m_from = from;
+      m_to = to;
+    }
+
+    protected void compute() {
+      if ( m_to - m_from > 1 && ( m_to - m_from ) * m_lon.length > MIN_CELLS ) {
+        int mid = ( m_from + m_to ) >>> 1;
+        invokeAll( new Rows( m_ra, m_dec, m_gst0, m_h0, m_rise, m_set, m_from, mid ),
+                   new Rows( m_ra, m_dec, m_gst0, m_h0, m_rise, m_set, mid, m_to ) );
+        return;
+      }
+      for ( int i = m_from; i < m_to; i++ ) {
+        for ( int j = 0; j < m_lon.length; j++ ) {
+          RiseSet.Interpolated ip =
+              new RiseSet.Interpolated( m_ra, m_dec, m_gst0 + m_lon[j], m_lat[i] );
+          m_rise[i][j] = ip.find( RiseSet.RISING, m_h0 );
+          m_set[i][j] = ip.find( RiseSet.SETTING, m_h0 );
+        }
+      }
+    }
+
+    private static final long serialVersionUID = 1L;
+  }
+
+  // default pool, created on first use
+  private static class Pool {
+    static final ForkJoinPool POOL = new ForkJoinPool();
+  }
+
+  // smallest piece of work worth splitting
+  private static final int MIN_CELLS = 512;
+
+  private final double m_lat[], m_lon[];
+}
@@ -0,0 +1,193 @@
+/*****************************************************************************\
+ * RiseSetSeries
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.util.Arrays;
+
+/**
+ * Rise/set, transit and twilight times for one body over a series of
+ * consecutive days.
+ * <P>
+ * Each day needs the body's position at the start, middle and end of
+ * the day (see <TT>RiseSet.getTimesInterpolated()</TT>). When the
+ * next day requested starts exactly one day after the previous one,
+ * its first position is the previous day's last, so a run of
+ * <TT>n</TT> days costs <TT>2n+1</TT> ephemeris evaluations instead
+ * of <TT>3n</TT>. Each event search also starts from the time of the
+ * same event the day before, which usually skips the analytic first
+ * guess.
+ * <P>
+ * Days may be requested in any order; anything other than "the next
+ * day" simply starts a new run (for instance across a daylight time
+ * change, where local midnight moves by an hour).
+ */
+public class RiseSetSeries {
+
+ /**
+  * Constructor.
+  *
+  * @param rsType Rise/Set type (SUN, MOON, CIVIL_TWI, NAUTICAL_TWI, or
+  *     ASTRONOMICAL_TWI); all solar types share the same positions
+  * @param oi The observer's location
+  * @param pd A PlanetData instance to use for our calculations.
+  */
+  public RiseSetSeries( int rsType, ObsInfo oi, PlanetData pd ) {
+    this( oi, pd, RiseSet.body( rsType ) );
+  }
+
+  // any body (a Planets constant, with the Sun as Planets.EARTH)
+  RiseSetSeries( ObsInfo oi, PlanetData pd, int planet ) {
+    m_planet = planet;
+    m_oi = oi;
+    m_pd = pd;
+    Arrays.fill( m_seeds, Astro.INVALID );
+  }
+
+ /**
+  * Calculate the rise/set (or start/end) and transit times for a day.
+  *
+  * @param rsType Rise/Set type; must be of the body this series was
+  *     created for
+  * @param jd The Julian day for which to calculate the desired information (set to 0h local time
+  *
+  * @return the TimePair result, local time, with the transit in
+  *     <TT>c</TT> (see <TT>RiseSet.getTimesInterpolated()</TT>)
+  */
+  public TimePair getTimes( int rsType, double jd ) {
+    RiseSet.Interpolated ip = day( jd );
+    double h0 = RiseSet.riseSetAltitude( rsType );
+    int seed = SEEDS * rsType;
+
+    m_seeds[seed] = ip.find( RiseSet.RISING, h0, m_seeds[seed] );
+    m_seeds[seed+1] = ip.find( RiseSet.SETTING, h0, m_seeds[seed+1] );
+    m_seeds[seed+2] = ip.find( RiseSet.CULMINATING, 0., m_seeds[seed+2] );
+    return new TimePair( m_seeds[seed], m_seeds[seed+1], m_seeds[seed+2] );
+  }
+
+ /**
+  * Calculate the solar events for a day (see
+  * <TT>RiseSet.getSolarEvents()</TT>).
+  *
+  * @param jd The Julian day for which to calculate the desired information (set to 0h local time
+  * @param se Where the events go
+  */
+  public void getSolarEvents( double jd, SolarEvents se ) {
+    RiseSet.Interpolated ip = day( jd );
+    for ( int i = 0; i < SolarEvents.THRESHOLDS; i++ ) {
+      int rsType = SolarEvents.RS_TYPES[i];
+      int seed = SEEDS * rsType;
+      double h0 = RiseSet.riseSetAltitude( rsType );
+      se.rise[i] = m_seeds[seed] = ip.find( RiseSet.RISING, h0, m_seeds[seed] );
+      se.set[i] = m_seeds[seed+1] = ip.find( RiseSet.SETTING, h0, m_seeds[seed+1] );
+    }
+    // the transit doesn't depend on the threshold
+    int seed = SEEDS * RiseSet.SUN + 2;
+    se.transit = m_seeds[seed] = ip.find( RiseSet.CULMINATING, 0., m_seeds[seed] );
+  }
+
+ /**
+  * Calculate all the events of a day for one rise/set altitude (see
+  * <TT>RiseSet.getEvents()</TT>).
+  *
+  * @param jd The Julian day for which to calculate the desired information (set to 0h local time
+  * @param h0 The rise/set altitude, in radians
+  *
+  * @return The events, local time
+  */
+  public RiseSetEvents getEvents( double jd, double h0 ) {
+    return day( jd ).events( h0 );
+  }
+
+ /**
+  * Get the number of ephemeris evaluations so far.
+  */
+  public int evaluations() { return m_evaluations; }
+
+ /**
+  * Share positions with other series (for other sites) through a
+  * memo: positions found there are not calculated again.
+  *
+  * @param memo The memo, or <TT>null</TT> to calculate every position
+  */
+  public void setMemo( PositionMemo memo ) { m_memo = memo; }
+
+  //-------------------------------------------------------------------------
+  // positions for the day starting at jd, reusing the last one if jd
+  // follows the previous day
+  //
+  private RiseSet.Interpolated day( double jd ) {
+    boolean next = ( jd == m_jd + 1. );
+    double ra[] = new double[3], dec[] = new double[3];
+    if ( next ) {
+      ra[0] = m_ra;
+      dec[0] = m_dec;
+    }
+    m_evaluations += positions( m_pd, m_planet, jd, m_oi, ra, dec, next ? 1 : 0, m_memo );
+
+    m_jd = jd;
+    m_ra = ra[2];
+    m_dec = dec[2];
+    return new RiseSet.Interpolated( ra, dec,
+        AstroOps.greenwichSiderealTime( jd ) + m_oi.getLongitudeRad(),
+        m_oi.getLatitudeRad() );
+  }
+
+  //-------------------------------------------------------------------------
+  // RA/Dec at the start, middle and end of the day, from index first
+  // on; returns the number of ephemeris evaluations
+  //
+  static int positions( PlanetData pd, int planet, double jd, ObsInfo oi,
+                        double ra[], double dec[], int first )
+  {
+    return positions( pd, planet, jd, oi, ra, dec, first, null );
+  }
+
+  // the same, taking what it can from a memo (if not null)
+  static int positions( PlanetData pd, int planet, double jd, ObsInfo oi,
+                        double ra[], double dec[], int first, PositionMemo memo )
+  {
+    if ( pd.isLowPrecision() )
+      memo = null;
+    int evaluations = 0;
+    double radec[] = new double[2];
+    for ( int i = first; i < 3; i++ ) {
+      double t = jd + i * .5;
+      if ( null != memo && memo.get( planet, t, radec ) ) {
+        ra[i] = radec[0];
+        dec[i] = radec[1];
+      }
+      else {
+        pd.calc( planet, t, oi );
+        try {
+          ra[i] = pd.getRightAscension();
+          dec[i] = pd.getDeclination();
+        } catch ( NoInitException ni ) {}
+        evaluations++;
+        if ( null != memo )
+          memo.put( planet, t, ra[i], dec[i] );
+      }
+      // keep RA continuous across 0h
+      if ( i > 0 )
+        ra[i] = ra[i-1] + RiseSet.signedAngle( ra[i] - ra[i-1] );
+    }
+    return evaluations;
+  }
+
+  //-------------------------------------------------------------------------
+  private final int m_planet;
+  private final ObsInfo m_oi;
+  private final PlanetData m_pd;
+  private PositionMemo m_memo;
+
+  // start of the last day, and the position at its end
+  private double m_jd = Double.NaN;
+  private double m_ra, m_dec;
+
+  // last rise, set and transit found, for each rsType
+  private static final int SEEDS = 3;
+  private final double m_seeds[] = new double[SEEDS * (RiseSet.ASTRONOMICAL_TWI + 1)];
+
+  private int m_evaluations;
+}
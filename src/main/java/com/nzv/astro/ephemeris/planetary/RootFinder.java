@@ -0,0 +1,199 @@
+/*****************************************************************************\
+ * RootFinder
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * Bracketed root finding for event searches.
+ * <P>
+ * Most "when does it happen" questions in this library (lunar
+ * phases, equinoxes, rise and set times) boil down to finding the
+ * time at which some smooth function of time crosses zero, after a
+ * coarse scan has found an interval where it changes sign. This
+ * class refines such an interval with Brent's method, which combines
+ * the safety of bisection with the speed of the secant method and
+ * inverse quadratic interpolation.
+ * <P>
+ * A scan can also miss a pair of crossings that fall between two
+ * samples. <TT>minimum()</TT> finds where the function comes closest
+ * to zero between them, so that the interval can be split there.
+ */
+public class RootFinder {
+
+ /**
+  * A function of one variable.
+  */
+  public interface Function {
+   /**
+    * Evaluate the function.
+    *
+    * @param x The argument (typically a Julian day)
+    *
+    * @return The function value
+    */
+    double value( double x );
+  }
+
+ /**
+  * Default iteration limit.
+  */
+  public static final int MAX_ITERATIONS = 50;
+
+ /**
+  * Find a root of <TT>f</TT> in the interval [a, b].
+  *
+  * @param f The function
+  * @param a Start of the interval
+  * @param b End of the interval
+  * @param tolerance Required accuracy of the root (absolute, in the
+  *     units of the argument)
+  *
+  * @return The root, or <TT>Double.NaN</TT> if <TT>f(a)</TT> and
+  *     <TT>f(b)</TT> have the same sign
+  */
+  public static double brent( Function f, double a, double b, double tolerance ) {
+    return brent( f, a, b, f.value( a ), f.value( b ), tolerance, MAX_ITERATIONS );
+  }
+
+ /**
+  * Find a root of <TT>f</TT> in the interval [a, b], where the
+  * function values at both ends are already known.
+  * <P>
+  * Callers that found the interval by sampling should use this
+  * version, so that the end points are not evaluated again.
+  *
+  * @param f The function
+  * @param a Start of the interval
+  * @param b End of the interval
+  * @param fa <TT>f(a)</TT>
+  * @param fb <TT>f(b)</TT>
+  * @param tolerance Required accuracy of the root (absolute, in the
+  *     units of the argument)
+  * @param maxIterations Maximum number of function evaluations
+  *
+  * @return The root, or <TT>Double.NaN</TT> if <TT>fa</TT> and
+  *     <TT>fb</TT> have the same sign
+  */
+  public static double brent( Function f, double a, double b,
+                              double fa, double fb,
+                              double tolerance, int maxIterations )
+  {
+    if ( 0D == fa )
+      return a;
+    if ( 0D == fb )
+      return b;
+    if ( (fa > 0D) == (fb > 0D) )
+      return Double.NaN;
+
+    // b is always the best estimate so far, c the previous one
+    // (or the other end of the bracket)
+    double c = a, fc = fa;
+    double d = b - a, e = d;
+
+    for ( int i = 0; i < maxIterations; i++ ) {
+      if ( (fb > 0D) == (fc > 0D) ) {
+        // root is between a and b: reset c to a
+        c = a;  fc = fa;
+        d = b - a;  e = d;
+      }
+      if ( Math.abs( fc ) < Math.abs( fb ) ) {
+        // make b the best estimate
+        a = b;  b = c;  c = a;
+        fa = fb;  fb = fc;  fc = fa;
+      }
+
+      double tol1 = 2D * EPSILON * Math.abs( b ) + .5 * tolerance;
+      double xm = .5 * ( c - b );
+      if ( Math.abs( xm ) <= tol1 || 0D == fb )
+        return b;
+
+      if ( Math.abs( e ) >= tol1 && Math.abs( fa ) > Math.abs( fb ) ) {
+        // attempt inverse quadratic interpolation (secant if a == c)
+        double p, q, r;
+        double s = fb / fa;
+        if ( a == c ) {
+          p = 2D * xm * s;
+          q = 1D - s;
+        }
+        else {
+          q = fa / fc;
+          r = fb / fc;
+          p = s * ( 2D * xm * q * (q - r) - (b - a) * (r - 1D) );
+          q = (q - 1D) * (r - 1D) * (s - 1D);
+        }
+        if ( p > 0D )
+          q = -q;
+        else
+          p = -p;
+
+        if ( 2D * p < Math.min( 3D * xm * q - Math.abs( tol1 * q ),
+                                Math.abs( e * q ) ) ) {
+          // interpolation accepted
+          e = d;
+          d = p / q;
+        }
+        else {
+          // interpolation failed, bisect
+          d = xm;
+          e = d;
+        }
+      }
+      else {
+        // bounds decreasing too slowly, bisect
+        d = xm;
+        e = d;
+      }
+
+      a = b;
+      fa = fb;
+      b += ( Math.abs( d ) > tol1 ) ? d : ( xm > 0D ? tol1 : -tol1 );
+      fb = f.value( b );
+    }
+    return b;
+  }
+
+ /**
+  * Find the minimum of <TT>f</TT> in the interval [a, b] by
+  * golden-section search.
+  * <P>
+  * The function should have a single minimum in the interval; if it
+  * is monotonic, the result is next to the lower end.
+  *
+  * @param f The function
+  * @param a Start of the interval
+  * @param b End of the interval
+  * @param tolerance Required accuracy of the minimum (absolute, in the
+  *     units of the argument)
+  * @param maxIterations Maximum number of function evaluations
+  *
+  * @return The argument of the minimum
+  */
+  public static double minimum( Function f, double a, double b,
+                                double tolerance, int maxIterations )
+  {
+    double c = b - GOLDEN * ( b - a ), d = a + GOLDEN * ( b - a );
+    double fc = f.value( c ), fd = f.value( d );
+    for ( int i = 2; i < maxIterations && b - a > tolerance; i++ ) {
+      if ( fc <= fd ) {
+        // minimum is between a and d
+        b = d;
+        d = c;  fd = fc;
+        c = b - GOLDEN * ( b - a );
+        fc = f.value( c );
+      }
+      else {
+        // minimum is between c and b
+        a = c;
+        c = d;  fc = fd;
+        d = a + GOLDEN * ( b - a );
+        fd = f.value( d );
+      }
+    }
+    return ( fc <= fd ) ? c : d;
+  }
+
+  private static final double GOLDEN = ( Math.sqrt( 5D ) - 1D ) / 2D;
+
+  private static final double EPSILON = Math.ulp( 1D );
+}
@@ -0,0 +1,196 @@
+/*****************************************************************************\
+ * SiteCatalog
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.io.*;
+import java.time.DateTimeException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A list of named observing sites (observatories, cities), each with
+ * a latitude, longitude and time zone.
+ * <P>
+ * A catalog can be read from a text file with one site per line:
+ * <PRE>
+ *   # name, latitude, longitude, time zone
+ *   Kitt Peak, 31.958, -111.600, -7
+ *   La Silla, -29.257, -70.738, -4
+ * </PRE>
+ * Latitudes and longitudes are in degrees (north and east positive),
+ * time zones in hours relative to UTC. Blank lines and lines starting
+ * with '#' are ignored.
+ * <P>
+ * A time zone may also be a <TT>java.time</TT> zone id or a
+ * fractional offset (see <TT>ZoneOffsets.of()</TT>):
+ * <PRE>
+ *   Pic du Midi, 42.937, 0.142, Europe/Paris
+ *   Siding Spring, -31.273, 149.061, Australia/Sydney
+ * </PRE>
+ * Such a site's <TT>getZone()</TT> is the zone, and its
+ * <TT>getTimeZone()</TT> the zone's standard offset, to the nearest
+ * hour, for callers that only take whole hours. Callers that keep
+ * local time should use <TT>getZoneOffsets()</TT> instead, which has
+ * the zone's exact offsets (Daylight time included) for any site.
+ */
+public class SiteCatalog {
+
+ /**
+  * Add a site.
+  *
+  * @param name The site's name
+  * @param lat Latitude, in degrees
+  * @param lon Longitude, in degrees
+  * @param tz Time zone offset relative to UTC
+  */
+  public void add( String name, double lat, double lon, int tz ) {
+    m_names.add( name );
+    m_lat.add( lat );
+    m_lon.add( lon );
+    m_tz.add( tz );
+    m_zones.add( null );
+  }
+
+ /**
+  * Add a site with a time zone id.
+  *
+  * @param name The site's name
+  * @param lat Latitude, in degrees
+  * @param lon Longitude, in degrees
+  * @param zone Time zone (see <TT>ZoneOffsets.of()</TT>)
+  *
+  * @throws java.time.DateTimeException if the zone is unknown
+  */
+  public void add( String name, double lat, double lon, String zone ) {
+    double standard = ZoneOffsets.of( zone ).standardOffset( J2000_DAY );
+    add( name, lat, lon, (int)Math.round( standard ) );
+    m_zones.set( m_zones.size() - 1, zone );
+  }
+
+ /**
+  * Get the number of sites.
+  */
+  public int size() { return m_names.size(); }
+
+ /**
+  * Get a site's name.
+  */
+  public String getName( int i ) { return m_names.get( i ); }
+
+ /**
+  * Get a site's latitude, in degrees.
+  */
+  public double getLatitude( int i ) { return m_lat.get( i ); }
+
+ /**
+  * Get a site's longitude, in degrees.
+  */
+  public double getLongitude( int i ) { return m_lon.get( i ); }
+
+ /**
+  * Get a site's time zone offset relative to UTC.
+  */
+  public int getTimeZone( int i ) { return m_tz.get( i ); }
+
+ /**
+  * Get a site's time zone id, or <TT>null</TT> if it was given as
+  * whole hours.
+  */
+  public String getZone( int i ) { return m_zones.get( i ); }
+
+ /**
+  * Get a site's UTC offsets: its zone's, or for a time zone given as
+  * whole hours, that fixed offset (without Daylight time).
+  */
+  public ZoneOffsets getZoneOffsets( int i ) {
+    String zone = getZone( i );
+    return ZoneOffsets.of( ( null == zone ) ? String.valueOf( getTimeZone( i ) ) : zone );
+  }
+
+ /**
+  * Get a site's location.
+  */
+  public ObsInfo getObsInfo( int i ) {
+    return new ObsInfo( new Latitude( getLatitude( i ) ),
+                        new Longitude( getLongitude( i ) ), getTimeZone( i ) );
+  }
+
+ /**
+  * Find a site by name.
+  *
+  * @return The site's index, or -1 if not found
+  */
+  public int indexOf( String name ) {
+    return m_names.indexOf( name );
+  }
+
+ /**
+  * Read a catalog from a text file.
+  *
+  * @param file The site list
+  *
+  * @return The catalog
+  *
+  * @throws IOException if the file can't be read, or a line can't be
+  *     parsed
+  */
+  public static SiteCatalog read( File file ) throws IOException {
+    SiteCatalog sc = new SiteCatalog();
+    BufferedReader br = new BufferedReader( new FileReader( file ) );
+    try {
+      String line;
+      for ( int n = 1; null != ( line = br.readLine() ); n++ ) {
+        line = line.trim();
+        if ( 0 == line.length() || '#' == line.charAt( 0 ) )
+          continue;
+        String fields[] = line.split( "," );
+        if ( 4 != fields.length )
+          throw new IOException( file + ":" + n + ": expected name, lat, lon, tz" );
+        try {
+          String name = fields[0].trim();
+          double lat = Double.parseDouble( fields[1].trim() );
+          double lon = Double.parseDouble( fields[2].trim() );
+          String tz = fields[3].trim();
+          if ( tz.matches( "[-+]?\\d+" ) )
+            sc.add( name, lat, lon, Integer.parseInt( tz ) );
+          else
+            sc.add( name, lat, lon, tz );
+        }
+        catch ( NumberFormatException nfe ) {
+          throw new IOException( file + ":" + n + ": " + nfe.getMessage() );
+        }
+        catch ( DateTimeException dte ) {
+          throw new IOException( file + ":" + n + ": " + dte.getMessage() );
+        }
+      }
+    }
+    finally {
+      br.close();
+    }
+    return sc;
+  }
+
+  public boolean equals( Object o ) {
+    if ( !( o instanceof SiteCatalog ) )
+      return false;
+    SiteCatalog sc = (SiteCatalog)o;
+    return m_names.equals( sc.m_names ) && m_lat.equals( sc.m_lat ) &&
+           m_lon.equals( sc.m_lon ) && m_tz.equals( sc.m_tz ) &&
+           m_zones.equals( sc.m_zones );
+  }
+
+  public int hashCode() {
+    return m_names.hashCode() ^ m_lat.hashCode() ^ m_lon.hashCode() ^ m_tz.hashCode() ^
+           m_zones.hashCode();
+  }
+
+  private final List<String> m_names = new ArrayList<String>();
+  private final List<Double> m_lat = new ArrayList<Double>();
+  private final List<Double> m_lon = new ArrayList<Double>();
+  private final List<Integer> m_tz = new ArrayList<Integer>();
+  private final List<String> m_zones = new ArrayList<String>();
+
+  private static final long J2000_DAY = DateOps.dmyToDay( 1, 1, 2000 );
+}
@@ -0,0 +1,105 @@
+/*****************************************************************************\
+ * SolarApprox
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * A low precision closed form for the position of the Sun (Meeus,
+ * Astronomical Algorithms, chapter 25), meant as a fast alternative
+ * to the VSOP87 Earth series where a hundredth of a degree is good
+ * enough: sunrise, sunset and twilight searches in particular.
+ * <P>
+ * The Sun's ecliptic latitude (never more than about one arc second)
+ * is taken as zero. Compared with the VSOP87 Earth series in
+ * <TT>Vsop</TT> every 0.37 days from 1800 to 2200 (see
+ * <TT>main()</TT>), the largest longitude error found was 0.0105
+ * degrees (0.003 degrees RMS), and the largest distance error
+ * 0.0001 AU.
+ * <P>
+ * An evaluation takes 4 sines and a cosine, against several hundred
+ * terms for VSOP87.
+ */
+public class SolarApprox {
+
+ /**
+  * Maximum longitude error relative to <TT>Vsop</TT>, in radians
+  */
+  public static final double MAX_ERROR = Math.toRadians( .012 );
+
+ /**
+  * Calculate the heliocentric position of the Earth, as
+  * <TT>Vsop.calcAllLEs()</TT> does for <TT>Planets.EARTH</TT>.
+  *
+  * @param locs Where the calculated LEs go (latitude and longitude in
+  *     radians, radius in AU)
+  * @param t Time in Julian centuries ref J2000
+  */
+  public static void calcEarthLEs( LocationElements locs, double t ) {
+    double M = Math.toRadians( AstroOps.normalizeDegrees(
+                   357.52911 + t * ( 35999.05029 - t * .0001537 ) ) );
+    double C = equationOfCenter( M, t );
+    double e = .016708634 - t * ( .000042037 + t * .0000001267 );
+    double radius = 1.000001018 * ( 1. - e * e ) / ( 1. + e * Math.cos( M + C ) );
+
+    locs.set( 0., AstroOps.normalizeRadians( meanLongitude( t ) + C + Math.PI ),
+              radius );
+  }
+
+ /**
+  * Calculate the geocentric longitude of the Sun.
+  *
+  * @param t Time in Julian centuries ref J2000
+  *
+  * @return The longitude in radians (0 to 2Pi)
+  */
+  public static double longitude( double t ) {
+    double M = Math.toRadians( AstroOps.normalizeDegrees(
+                   357.52911 + t * ( 35999.05029 - t * .0001537 ) ) );
+    return AstroOps.normalizeRadians( meanLongitude( t ) + equationOfCenter( M, t ) );
+  }
+
+  //-------------------------------------------------------------------------
+  // geometric mean longitude (referred to the mean equinox of date)
+  //
+  private static double meanLongitude( double t ) {
+    return Math.toRadians( AstroOps.normalizeDegrees(
+               280.46646 + t * ( 36000.76983 + t * .0003032 ) ) );
+  }
+
+  //-------------------------------------------------------------------------
+  // equation of center, M in radians
+  //
+  private static double equationOfCenter( double M, double t ) {
+    return Math.toRadians(
+        ( 1.914602 - t * ( .004817 + t * .000014 ) ) * Math.sin( M ) +
+        ( .019993 - t * .000101 ) * Math.sin( 2. * M ) +
+        .000289 * Math.sin( 3. * M ) );
+  }
+
+  //-------------------------------------------------------------------------
+ /**
+  * (for unit testing only)
+  */
+  public static void main( String args[] ) {
+    LocationElements full = new LocationElements();
+    LocationElements approx = new LocationElements();
+    double maxLon = 0., maxRad = 0., sumLon = 0.;
+    int n = 0;
+
+    // 1800 to 2200, every 0.37 days
+    for ( double t = -2.; t < 2.; t += .37 / Astro.TO_CENTURIES, n++ ) {
+      Vsop.calcAllLEs( full, t, Planets.EARTH );
+      calcEarthLEs( approx, t );
+
+      double dLon = Math.abs( AstroOps.normalizeRadians(
+          approx.getLongitude() - full.getLongitude() + Math.PI ) - Math.PI );
+      maxLon = Math.max( maxLon, dLon );
+      maxRad = Math.max( maxRad, Math.abs( approx.getRadius() - full.getRadius() ) );
+      sumLon += dLon * dLon;
+    }
+    System.out.println( "Longitude: max " + Math.toDegrees( maxLon ) +
+        " deg, RMS " + Math.toDegrees( Math.sqrt( sumLon / n ) ) );
+    System.out.println( "Distance:  max " + maxRad + " AU" );
+  }
+}
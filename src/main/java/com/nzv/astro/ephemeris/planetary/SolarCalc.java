@@ -0,0 +1,144 @@
+/*****************************************************************************\
+ * SolarCalc
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+/**
+ * Solar calculations: the Sun's apparent longitude, and the times of
+ * the solstices and equinoxes.
+ */
+public class SolarCalc {
+  private SolarCalc() {}
+
+ /**
+  * Default accuracy of <TT>seasonChange()</TT>, in days (one second).
+  */
+  public static final double SEASON_TOLERANCE = 1D / Astro.SECONDS_PER_DAY;
+
+ /**
+  * Calculate the Sun's apparent geocentric longitude (Meeus,
+  * Astronomical Algorithms, chapter 25, "higher accuracy"): the
+  * VSOP87 longitude, converted to FK5, plus nutation in longitude and
+  * aberration.
+  * <P>
+  * Nutation is taken from the four largest terms (Meeus, chapter 22),
+  * which are good to half an arc second, or about 12 seconds of time.
+  *
+  * @param jd Julian day
+  *
+  * @return The apparent longitude in radians (0 to 2Pi)
+  */
+  public static double apparentLongitude( double jd ) {
+    double t = AstroOps.toMillenia( jd );
+    double lon = Vsop.calcLE( t, Planets.EARTH, LocationElements.LONGITUDE ) + Math.PI;
+    double r = Vsop.calcLE( t, Planets.EARTH, LocationElements.RADIUS );
+    return apparent( t, lon, r );
+  }
+
+  // apparent longitude from the geometric (VSOP87) one, at t (see
+  // AstroOps.toMillenia()) and distance r (AU)
+  private static double apparent( double t, double lon, double r ) {
+    double omega = Math.toRadians( 125.04452 - 1934.136261 * t );
+    double l = Math.toRadians( 280.4665 + 36000.7698 * t );
+    double lMoon = Math.toRadians( 218.3165 + 481267.8813 * t );
+    double dPhi = -17.20 * Math.sin( omega ) - 1.32 * Math.sin( 2D * l )
+                  - .23 * Math.sin( 2D * lMoon ) + .21 * Math.sin( 2D * omega );
+
+    // arc seconds: nutation, then FK5 and aberration
+    return AstroOps.normalizeRadians(
+        lon + Math.toRadians( dPhi / Astro.SECONDS_PER_DEGREE ) + fk5Aberration( r ) );
+  }
+
+  // FK5 conversion and aberration of the Sun's longitude at distance r
+  // (AU), in radians: the apparent longitude's correction, less
+  // nutation
+  static double fk5Aberration( double r ) {
+    return Math.toRadians( ( -.09033 - 20.4898 / r ) / Astro.SECONDS_PER_DEGREE );
+  }
+
+ /**
+  * Calculate the time of the solstice or equinox during a day.
+  *
+  * @param jd Start of the day
+  *
+  * @return The fraction of the day after <TT>jd</TT> at which the
+  *     change occurs, or -1 if there is no change within that day
+  */
+  public static double seasonChange( double jd ) {
+    return seasonChange( jd, SEASON_TOLERANCE );
+  }
+
+ /**
+  * Calculate the time of the solstice or equinox during a day, to a
+  * given accuracy.
+  * <P>
+  * The Sun moves about one degree a day, so at most one quadrant
+  * boundary (0, 90, 180 or 270 degrees) is crossed. The crossing is
+  * bracketed by the longitudes at both ends of the day, and then
+  * refined with Brent's method.
+  *
+  * @param jd Start of the day
+  * @param tolerance Required accuracy, in days
+  *
+  * @return The fraction of the day after <TT>jd</TT> at which the
+  *     change occurs, or -1 if there is no change within that day
+  */
+  public static double seasonChange( double jd, double tolerance ) {
+    return refine( jd, apparentLongitude( jd ), apparentLongitude( jd + 1D ), tolerance );
+  }
+
+ /**
+  * Calculate the time of the solstice or equinox during a day, from
+  * the Sun's geometric longitudes at both ends of the day (VSOP87, as
+  * <TT>PlanetData.calcLon()</TT> gives them), for callers that
+  * already have them: they are made apparent (with the Earth's
+  * distance from its mean anomaly) to bracket the change, rather than
+  * calculated again.
+  *
+  * @param jd Start of the day
+  * @param lon0 Geometric solar longitude at <TT>jd</TT>, in radians
+  * @param lon1 Geometric solar longitude at <TT>jd + 1</TT>
+  * @param tolerance Required accuracy, in days
+  *
+  * @return The fraction of the day after <TT>jd</TT> at which the
+  *     change occurs, or -1 if there is no change within that day
+  */
+  public static double seasonChange( double jd, double lon0, double lon1,
+                                     double tolerance )
+  {
+    double t0 = AstroOps.toMillenia( jd ), t1 = AstroOps.toMillenia( jd + 1D );
+    return refine( jd, apparent( t0, lon0, meanRadius( t0 ) ),
+                   apparent( t1, lon1, meanRadius( t1 ) ), tolerance );
+  }
+
+  // the Earth's distance (AU) from the mean anomaly (Meeus, chapter 25)
+  static double meanRadius( double t ) {
+    double m = Math.toRadians( 357.52911 + 35999.05029 * t );
+    return 1.000140 - .016708 * Math.cos( m ) - .000139 * Math.cos( 2D * m );
+  }
+
+  // find the quadrant boundary crossed between apparent longitudes lon0
+  // (at jd) and lon1 (at jd + 1), if any
+  private static double refine( double jd, double lon0, double lon1, double tolerance ) {
+    int q1 = AstroOps.quadrant( lon1 );
+    if ( AstroOps.quadrant( lon0 ) == q1 )
+      return Astro.INVALID;
+
+    // the boundary crossed is the start of the later quadrant
+    final double target = q1 * Astro.PI_OVER_TWO;
+    RootFinder.Function f = new RootFinder.Function() {
+      public double value( double x ) {
+        // signed distance from the target, in (-PI, PI]
+        double diff = AstroOps.normalizeRadians( apparentLongitude( x ) - target );
+        return ( diff > Math.PI ) ? diff - Astro.TWO_PI : diff;
+      }
+    };
+    double f0 = AstroOps.normalizeRadians( lon0 - target ) - Astro.TWO_PI;
+    double f1 = AstroOps.normalizeRadians( lon1 - target );
+
+    double root = RootFinder.brent( f, jd, jd + 1D, f0, f1,
+                                    tolerance, RootFinder.MAX_ITERATIONS );
+    return Double.isNaN( root ) ? Astro.INVALID : root - jd;
+  }
+}
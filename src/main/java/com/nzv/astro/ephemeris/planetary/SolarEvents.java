@@ -0,0 +1,74 @@
+/*****************************************************************************\
+ * SolarEvents
+\*****************************************************************************/
+package com.nzv.astro.ephemeris.planetary;
+
+import java.util.Arrays;
+
+/**
+ * The Sun's events for one day: rise, set and transit, and the start
+ * and end of civil, nautical and astronomical twilight.
+ * <P>
+ * Times are fractions of the day (local time), or
+ * <TT>Astro.INVALID</TT> when the event does not occur. The arrays
+ * are indexed by threshold (<TT>SUNRISE</TT>, <TT>CIVIL</TT>,
+ * <TT>NAUTICAL</TT>, <TT>ASTRONOMICAL</TT>).
+ *
+ * @see RiseSet#getSolarEvents
+ */
+public class SolarEvents {
+ /**
+  * Threshold index (pseudo-enum)
+  */
+  public static final int SUNRISE = 0, CIVIL = 1, NAUTICAL = 2, ASTRONOMICAL = 3;
+
+ /**
+  * Number of thresholds
+  */
+  public static final int THRESHOLDS = 4;
+
+  // RiseSet calculation type of each threshold
+  static final int RS_TYPES[] = { RiseSet.SUN, RiseSet.CIVIL_TWI,
+                                  RiseSet.NAUTICAL_TWI, RiseSet.ASTRONOMICAL_TWI };
+
+ /**
+  * Default constructor (all events INVALID).
+  */
+  public SolarEvents() {
+    Arrays.fill( rise, Astro.INVALID );
+    Arrays.fill( set, Astro.INVALID );
+  }
+
+ /**
+  * Get the times for one <TT>RiseSet</TT> calculation type, as
+  * <TT>RiseSet.getTimes()</TT> would return them.
+  *
+  * @param rsType Rise/Set type (SUN, CIVIL_TWI, NAUTICAL_TWI, or ASTRONOMICAL_TWI).
+  *
+  * @return The rise (or twilight start) and set (or end) times, and
+  *     the transit in <TT>c</TT>
+  *
+  * @throws ValueException if <TT>rsType</TT> is not a solar type
+  */
+  public TimePair getTimePair( int rsType ) throws ValueException {
+    for ( int i = 0; i < THRESHOLDS; i++ )
+      if ( RS_TYPES[i] == rsType )
+        return new TimePair( rise[i], set[i], transit );
+    throw new ValueException( "not a solar rise/set type." );
+  }
+
+ /**
+  * Rise (or twilight start) times, by threshold
+  */
+  public final double rise[] = new double[THRESHOLDS];
+
+ /**
+  * Set (or twilight end) times, by threshold
+  */
+  public final double set[] = new double[THRESHOLDS];
+
+ /**
+  * Transit (upper culmination) time
+  */
+  public double transit = Astro.INVALID;
+}
@@ -45,6 +45,11 @@ import java.text.DecimalFormat;
  * If you use the explicit (all values) constructor, all of the
  * above functions are called for you automatically.
  * <P>
+ * When the Sun and Moon move but the site and the date do not (a
+ * night's timeline, say), setBrightnessParams() need only be called
+ * once; setBodyParams() then updates the Sun and Moon positions,
+ * which is much cheaper.
+ * <P>
  * <B>Notice</B> that we modified his test conditions. He had the
  * moon and sun well below the horizon; I found that this didn't
  * make testing contributions from those objects any easier, so we
@@ -109,7 +114,7 @@ public class VisLimit {
   public void setBrightnessParams(VisLimitFixedBrightnessData fbd) {
     fixed = fbd;
     double monthAngle = (fixed.month - 3.) * Math.PI / 6.;
-    double kaCoeff, krCoeff, koCoeff, kwCoeff, moonElong;
+    double kaCoeff, krCoeff, koCoeff, kwCoeff;
     int i;
 
     krCoeff = .1066 * Math.exp( -fixed.htAboveSeaInMeters / 8200.);
@@ -137,12 +142,6 @@ public class VisLimit {
                       Math.exp( -fixed.htAboveSeaInMeters / 8200.);
 
     yearTerm = 1. + .3 * Math.cos( 2. * Math.PI * (fixed.year - 1992) / 11.);
-    airMassMoon = computeAirMass( fixed.zenithAngMoon);
-    airMassSun  = computeAirMass( fixed.zenithAngSun);
-    moonElong = fixed.moonElongation * 180. / Math.PI;
-    lunarMag = -12.73 + moonElong * (.026 +
-                       4.e-9 * (moonElong * moonElong * moonElong));
-                /* line 2180 in B Schaefer code */
 
     for( i = 0; i < 5; i++) {
 
@@ -152,6 +151,34 @@ public class VisLimit {
       kw[i] = kwCoeff * wt[i];
 
       k[i] = kr[i] + ka[i] + ko[i] + kw[i];
+    }
+
+    setBodyParams( fixed.zenithAngMoon, fixed.zenithAngSun, fixed.moonElongation );
+  }
+
+ /**
+  * Set the Sun and Moon positions, keeping the rest of the fixed
+  * brightness parameters (which must have been set).
+  *
+  * @param zenithAngMoon The lunar zenith angle
+  * @param zenithAngSun The solar zenith angle
+  * @param moonElongation The lunar elongation
+  */
+  public void setBodyParams(double zenithAngMoon, double zenithAngSun,
+                            double moonElongation) {
+    double moonElong;
+    int i;
+
+    this.zenithAngMoon = zenithAngMoon;
+    this.zenithAngSun = zenithAngSun;
+    airMassMoon = computeAirMass( zenithAngMoon);
+    airMassSun  = computeAirMass( zenithAngSun);
+    moonElong = moonElongation * 180. / Math.PI;
+    lunarMag = -12.73 + moonElong * (.026 +
+                       4.e-9 * (moonElong * moonElong * moonElong));
+                /* line 2180 in B Schaefer code */
+
+    for( i = 0; i < 5; i++) {
       c3[i] = magToBrightness( k[i] * airMassMoon);
               /* compute dropoff in lunar brightness from extinction: 2200 */
       c4[i] = magToBrightness( k[i] * airMassSun);
@@ -190,7 +217,7 @@ public class VisLimit {
          bn *= directLoss;
                    /* drop brightness to account for extinction: 2160 */
 
-         if( fixed.zenithAngMoon < Math.PI / 2.)      /* moon is above horizon */
+         if( zenithAngMoon < Math.PI / 2.)      /* moon is above horizon */
             {
             brightnessMoon = magToBrightness( lunarMag + cm[i]
                                  - mo[i] + 43.27);
@@ -203,7 +230,7 @@ public class VisLimit {
             brightnessMoon = 0.;
 
          twilightBrightness = ms[i] - mo[i] + 32.5 -
-                           (90. - fixed.zenithAngSun * 180. / Math.PI) -
+                           (90. - zenithAngSun * 180. / Math.PI) -
                            angular.zenithAngle / (2 * Math.PI * k[i]);
                   /* above is in magnitudes,  so gotta do this: */
          twilightBrightness = magToBrightness( twilightBrightness);
@@ -348,7 +375,8 @@ public class VisLimit {
         /* Lunar magnitude? */
 
 
-  // Items computed in setBrightnessParams:
+  // Items computed in setBrightnessParams (and setBodyParams):
+  private double zenithAngSun, zenithAngMoon;
   private double airMassSun, airMassMoon, lunarMag;
   private double k[]  = { 0D, 0D, 0D, 0D, 0D },
                  c3[] = { 0D, 0D, 0D, 0D, 0D },
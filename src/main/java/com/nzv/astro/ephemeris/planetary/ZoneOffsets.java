@@ -0,0 +1,271 @@
+/*****************************************************************************\
+ * ZoneOffsets
+\*****************************************************************************/
+
+package com.nzv.astro.ephemeris.planetary;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * UTC offsets of a time zone by local date, from the <TT>java.time</TT>
+ * zone rules (any region, southern Daylight time and fractional
+ * offsets included), or, for the integer time zones <TT>DarkCal</TT>
+ * has always used, a fixed offset with the U.S. Daylight time dates of
+ * <TT>DateOps.dstStart()</TT> and <TT>DateOps.dstEnd()</TT>.
+ * <P>
+ * The offset changes are worked out once per year and cached (as are
+ * the zones), as primitive arrays, so that looking up a day's offset
+ * is a comparison or two. A day's offset is the one in effect after
+ * any change on that day: a change is taken to happen at the start of
+ * its day, as <TT>DarkCal</TT> has always done.
+ * <P>
+ * Offsets are in hours (east positive); days are Julian day numbers
+ * (see <TT>DateOps.dmyToDay()</TT>).
+ */
+public class ZoneOffsets {
+
+ /**
+  * Get the offsets for a time zone.
+  *
+  * @param zone A <TT>java.time</TT> zone id ("Europe/Paris",
+  *     "Asia/Kolkata", "+05:30", ...), or a fixed offset in hours
+  *     ("-5", "5.5", -18 to 18 inclusive)
+  *
+  * @return The (shared) offsets; zones are shared by their normalized
+  *     id, so "5.5", "5.50" and "+05:30" are the same
+  *
+  * @throws DateTimeException if the zone is unknown, or the offset out
+  *     of range
+  */
+  public static ZoneOffsets of( String zone ) {
+    ZoneId id = zoneId( zone );
+    String name = id.getId();
+    ZoneOffsets zo = ZONES.get( name );
+    if ( null == zo ) {
+      zo = new ZoneOffsets( name, id, 0D );
+      ZoneOffsets prev = ZONES.putIfAbsent( name, zo );
+      if ( null != prev )
+        zo = prev;
+    }
+    return zo;
+  }
+
+  // a zone id, or a fixed offset in hours
+  private static ZoneId zoneId( String zone ) {
+    double hours;
+    try {
+      hours = Double.parseDouble( zone );
+    }
+    catch ( NumberFormatException nfe ) {
+      return ZoneId.of( zone );
+    }
+    // (NaN fails the comparison too)
+    if ( !( Math.abs( hours ) <= MAX_OFFSET ) )
+      throw new DateTimeException( "Offset out of range: " + zone );
+    return ZoneOffset.ofTotalSeconds( (int)Math.round( hours * Astro.SECONDS_PER_HOUR ) );
+  }
+
+ /**
+  * Get the offsets for an integer time zone, with U.S. Daylight time
+  * (as <TT>DateOps.dstStart()</TT> and <TT>DateOps.dstEnd()</TT>).
+  *
+  * @param tz Standard offset from UTC, in hours
+  *
+  * @return The (shared) offsets
+  */
+  public static ZoneOffsets us( int tz ) {
+    String name = ( tz < 0 ) ? "UTC" + tz : "UTC+" + tz;
+    ZoneOffsets zo = ZONES.get( name );
+    if ( null == zo ) {
+      zo = new ZoneOffsets( name, null, tz );
+      ZoneOffsets prev = ZONES.putIfAbsent( name, zo );
+      if ( null != prev )
+        zo = prev;
+    }
+    return zo;
+  }
+
+ /**
+  * Get the offsets for a <TT>DarkCal</TT> input: its zone if it has
+  * one, or else its integer time zone with U.S. Daylight time.
+  *
+  * @param dci The input
+  */
+  public static ZoneOffsets of( DarkCalInput dci ) {
+    return ( null == dci.zone ) ? us( dci.tz ) : of( dci.zone );
+  }
+
+ /**
+  * Get the zone's name: the zone id, or "UTC-5" and the like for an
+  * integer time zone.
+  */
+  public String getName() { return m_name; }
+
+ /**
+  * Get the UTC offset in effect on a day.
+  *
+  * @param day Local date
+  *
+  * @return The offset, in hours
+  */
+  public double offset( long day ) {
+    Year y = year( day );
+    return y.offset[y.index( day )];
+  }
+
+ /**
+  * Get the standard UTC offset (without Daylight time) on a day.
+  *
+  * @param day Local date
+  *
+  * @return The offset, in hours
+  */
+  public double standardOffset( long day ) {
+    Year y = year( day );
+    return y.standard[y.index( day )];
+  }
+
+ /**
+  * Find whether Daylight time starts or ends on a day.
+  *
+  * @param day Local date
+  *
+  * @return 1 if it starts (or increases), -1 if it ends (or
+  *     decreases), 0 otherwise
+  */
+  public int daylightChange( long day ) {
+    Year y = year( day );
+    int i = y.index( day );
+    if ( 0 == i || day != y.change[i-1] )
+      return 0;
+    double after = y.offset[i] - y.standard[i];
+    double before = y.offset[i-1] - y.standard[i-1];
+    return ( after > before ) ? 1 : ( ( after < before ) ? -1 : 0 );
+  }
+
+  //-------------------------------------------------------------------------
+  // one year's offset changes
+  //
+  static final class Year {
+    final long first, next;         // this January 1st, and the next
+    final long change[];            // local dates on which the offset changes
+    final double offset[];          // hours: before the first change, then
+    final double standard[];        //   from each change on
+
+    Year( long first, long next, long change[], double offset[], double standard[] ) {
+      this.first = first;
+      this.next = next;
+      this.change = change;
+      this.offset = offset;
+      this.standard = standard;
+    }
+
+    // index into offset[] and standard[] for a day of the year
+    int index( long day ) {
+      int i = 0;
+      while ( i < change.length && day >= change[i] )
+        i++;
+      return i;
+    }
+  }
+
+ /**
+  * Get the year a day is in (for callers stepping through days, which
+  * need only look up the next year when they reach <TT>next</TT>).
+  *
+  * @param day Local date
+  */
+  Year year( long day ) {
+    int y = 2000 + (int)Math.floor( ( day - J2000_DAY ) / DAYS_PER_YEAR );
+    Year yr = year( y );
+    if ( day < yr.first )
+      return year( y - 1 );
+    if ( day >= yr.next )
+      return year( y + 1 );
+    return yr;
+  }
+
+  private Year year( int y ) {
+    Integer key = Integer.valueOf( y );
+    Year yr = m_years.get( key );
+    if ( null == yr ) {
+      yr = ( null == m_rules ) ? usYear( y ) : rulesYear( y );
+      Year prev = m_years.putIfAbsent( key, yr );
+      if ( null != prev )
+        yr = prev;
+    }
+    return yr;
+  }
+
+  // the zone rules' transitions during a year
+  private Year rulesYear( int y ) {
+    Instant t = LocalDate.of( y, 1, 1 ).atStartOfDay( m_zone ).toInstant();
+    Instant end = LocalDate.of( y + 1, 1, 1 ).atStartOfDay( m_zone ).toInstant();
+
+    ArrayList<ZoneOffsetTransition> trans = new ArrayList<ZoneOffsetTransition>();
+    for ( ZoneOffsetTransition tr = m_rules.nextTransition( t );
+          null != tr && tr.getInstant().isBefore( end );
+          tr = m_rules.nextTransition( tr.getInstant() ) )
+      trans.add( tr );
+
+    int n = trans.size();
+    long change[] = new long[n];
+    double offset[] = new double[n+1], standard[] = new double[n+1];
+    offset[0] = hours( m_rules.getOffset( t ) );
+    standard[0] = hours( m_rules.getStandardOffset( t ) );
+    for ( int i = 0; i < n; i++ ) {
+      ZoneOffsetTransition tr = trans.get( i );
+      LocalDate d = tr.getDateTimeBefore().toLocalDate();
+      change[i] = DateOps.dmyToDay( d.getDayOfMonth(), d.getMonthValue(), d.getYear() );
+      offset[i+1] = hours( tr.getOffsetAfter() );
+      standard[i+1] = hours( m_rules.getStandardOffset( tr.getInstant() ) );
+    }
+    return new Year( DateOps.dmyToDay( 1, 1, y ), DateOps.dmyToDay( 1, 1, y + 1 ),
+                     change, offset, standard );
+  }
+
+  // U.S. Daylight time, as DarkCal always had it
+  private Year usYear( int y ) {
+    double dst = m_standard + 1D;
+    return new Year( DateOps.dmyToDay( 1, 1, y ), DateOps.dmyToDay( 1, 1, y + 1 ),
+                     new long[] { DateOps.dstStart( y ), DateOps.dstEnd( y ) },
+                     new double[] { m_standard, dst, m_standard },
+                     new double[] { m_standard, m_standard, m_standard } );
+  }
+
+  private static double hours( ZoneOffset zo ) {
+    return (double)zo.getTotalSeconds() / Astro.SECONDS_PER_HOUR;
+  }
+
+  //-------------------------------------------------------------------------
+  private ZoneOffsets( String name, ZoneId zone, double standard ) {
+    m_name = name;
+    m_zone = zone;
+    m_rules = ( null == zone ) ? null : zone.getRules();
+    m_standard = standard;
+  }
+
+  private static final ConcurrentHashMap<String,ZoneOffsets> ZONES =
+      new ConcurrentHashMap<String,ZoneOffsets>();
+
+  // largest fixed offset, hours (as ZoneOffset allows)
+  private static final double MAX_OFFSET = 18D;
+
+  private static final long J2000_DAY = DateOps.dmyToDay( 1, 1, 2000 );
+  private static final double DAYS_PER_YEAR = 365.2425;
+
+  private final String m_name;
+  private final ZoneId m_zone;          // null for U.S. Daylight time
+  private final ZoneRules m_rules;
+  private final double m_standard;      // hours, for U.S. Daylight time
+  private final ConcurrentHashMap<Integer,Year> m_years =
+      new ConcurrentHashMap<Integer,Year>();
+}